@@ -0,0 +1,64 @@
+#!/usr/bin/env bash
+# Compares the plain jar with the fast-start artifact (AOT + CDS + faststart profile): for each
+# run, the time from launching the JVM to the first 200 from GET /items, and the resident set size
+# of the process at that moment. Prints one CSV row per run and the median of each variant.
+#
+# Usage: scripts/fast-start/measure-startup.sh [runs]
+#   SKIP_BUILD=true   reuse target/baseline and target/fast-start from an earlier run
+#   PORT=18080        port both variants listen on
+# Both variants use the same database (SPRING_DATASOURCE_*, or application.properties), which has
+# to be migrated already: the fast-start variant only validates the schema. Linux only (/proc).
+set -euo pipefail
+cd "$(dirname "$0")/../.."
+
+RUNS=${1:-5}
+PORT=${PORT:-18080}
+JAR=EcommerceShop-0.0.1-SNAPSHOT.jar
+RESULTS=target/startup-measurements.csv
+
+if [[ "${SKIP_BUILD:-}" != "true" ]]; then
+    ./mvnw -B -DskipTests package
+    rm -rf target/baseline
+    mkdir -p target/baseline
+    cp "target/$JAR" target/baseline/
+    scripts/fast-start/train-cds.sh
+fi
+
+# measure <variant> <directory> <java options...>
+measure() {
+    local variant=$1 dir=$2
+    shift 2
+    for run in $(seq "$RUNS"); do
+        local start pid end rss
+        start=$(date +%s%N)
+        (cd "$dir" && exec java "$@" -jar "$JAR" --server.port="$PORT") >/dev/null 2>&1 &
+        pid=$!
+        until curl -sf -o /dev/null "http://localhost:$PORT/items"; do
+            if ! kill -0 "$pid" 2>/dev/null; then
+                echo "$variant exited before serving /items" >&2
+                exit 1
+            fi
+            sleep 0.02
+        done
+        end=$(date +%s%N)
+        rss=$(awk '/^VmRSS:/ {print $2}' "/proc/$pid/status")
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+        echo "$variant,$run,$(( (end - start) / 1000000 )),$(( rss / 1024 ))" | tee -a "$RESULTS"
+    done
+}
+
+echo "variant,run,first_items_ms,rss_mb" | tee "$RESULTS"
+measure baseline target/baseline
+measure fast-start target/fast-start \
+    -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -Dspring.profiles.active=faststart
+
+echo
+for variant in baseline fast-start; do
+    for column in 3 4; do
+        grep "^$variant," "$RESULTS" | cut -d, -f"$column" | sort -n \
+            | awk -v v="$variant" -v c="$column" '{ a[NR] = $1 } END {
+                m = NR % 2 ? a[(NR + 1) / 2] : (a[NR / 2] + a[NR / 2 + 1]) / 2
+                printf "%-10s median %s: %s\n", v, c == 3 ? "first /items (ms)" : "RSS (MB)", m }'
+    done
+done
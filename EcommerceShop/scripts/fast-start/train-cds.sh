@@ -0,0 +1,29 @@
+#!/usr/bin/env bash
+# Builds the fast-start artifact into target/fast-start: the AOT-processed jar extracted to a
+# launcher jar plus lib/ (CDS needs a plain classpath), and application.jsa recorded by a training
+# run that starts the context and exits once it is refreshed.
+#
+# The training run connects to the database like a real start does, so point it at one that is
+# already migrated (SPRING_DATASOURCE_URL / _USERNAME / _PASSWORD, or application.properties).
+# Retrain whenever the jar or the JDK changes; the JVM ignores an archive that does not match.
+set -euo pipefail
+cd "$(dirname "$0")/../.."
+
+JAR=EcommerceShop-0.0.1-SNAPSHOT.jar
+OUT=target/fast-start
+
+if [[ "${SKIP_BUILD:-}" != "true" ]]; then
+    ./mvnw -B -Pfast-start -DskipTests package
+fi
+
+rm -rf "$OUT"
+java -Djarmode=tools -jar "target/$JAR" extract --destination "$OUT"
+
+cd "$OUT"
+java -XX:ArchiveClassesAtExit=application.jsa \
+     -Dspring.aot.enabled=true \
+     -Dspring.profiles.active=faststart \
+     -Dspring.context.exit=onRefresh \
+     -jar "$JAR"
+
+echo "Start with: cd $OUT && java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -Dspring.profiles.active=faststart -jar $JAR"
@@ -0,0 +1,58 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.service.PurchaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory basket pricing loop of the purchase path (PurchaseService.priceBasket).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BasketPricingBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    public int lines;
+
+    private Map<Long, Item> catalog;
+    private List<InvoiceItem> basket;
+    private Invoice invoice;
+
+    @Setup
+    public void setUp() {
+        catalog = new HashMap<>();
+        basket = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            Item item = new Item();
+            item.setItemId((long) i + 1);
+            item.setItemvalue(4.5 + i);
+            catalog.put(item.getItemId(), item);
+
+            // The request body only carries the item id and the quantity
+            Item reference = new Item();
+            reference.setItemId(item.getItemId());
+            InvoiceItem line = new InvoiceItem();
+            line.setItem(reference);
+            line.setQuantity(1 + i % 4);
+            basket.add(line);
+        }
+        invoice = new Invoice();
+    }
+
+    @Benchmark
+    public double priceBasket() {
+        return PurchaseService.priceBasket(invoice, basket, catalog);
+    }
+}
@@ -0,0 +1,74 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against CBOR and Smile for an invoice history as /invoice/searchbyID returns it: encode
+ * time, decode time (what a client pays) and, printed at setup, payload size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+    public enum Format {
+        JSON, CBOR, SMILE
+    }
+
+    private static final int LINES_PER_INVOICE = 5;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public Format format;
+
+    @Param({"10", "100", "1000"})
+    public int invoices;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<Invoice> history;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case JSON -> new ObjectMapper();
+            case CBOR -> new CBORMapper();
+            case SMILE -> new SmileMapper();
+        };
+        writer = mapper.writer();
+        reader = mapper.readerFor(new TypeReference<List<Invoice>>() {
+        });
+        history = new ArrayList<>(invoices);
+        for (int i = 0; i < invoices; i++) {
+            history.add(InvoiceSerializationBenchmark.invoice(i + 1, LINES_PER_INVOICE));
+        }
+        encoded = encode();
+        System.out.printf("%n%s, %d invoices: %d bytes%n", format, invoices, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(history);
+    }
+
+    // The back references (InvoiceItem.invoice) are restored from @JsonManagedReference/@JsonBackReference
+    @Benchmark
+    public List<Invoice> decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.service.ItemImporter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full bulk import per measurement through ItemImporter, as POST /item/bulk runs it: streaming
+ * parse, validation, chunked transactions with batched inserts, then catalog invalidation and
+ * search indexing. The item table is emptied before every import. Point it at MySQL (see
+ * {@link RepositoryReadBenchmark#embeddedShop}) for the 1M-row target against a real database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class BulkImportBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"CSV", "JSON"})
+    public ItemImporter.Format format;
+
+    @Param({"5000"})
+    public int chunkSize;
+
+    private ConfigurableApplicationContext context;
+    private ItemImporter itemImporter;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = RepositoryReadBenchmark.embeddedShop("import", "shop.import.chunk-size=" + chunkSize);
+        itemImporter = context.getBean(ItemImporter.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        StringBuilder text = new StringBuilder(rows * 80);
+        if (format == ItemImporter.Format.CSV) {
+            text.append("itemname,itemdescription,itemvalue,itemimage\n");
+            for (int i = 1; i <= rows; i++) {
+                text.append("Item ").append(i).append(",Description of item ").append(i).append(',')
+                        .append(1 + i % 100).append(".99,item").append(i).append(".png\n");
+            }
+        } else {
+            text.append('[');
+            for (int i = 1; i <= rows; i++) {
+                text.append(i == 1 ? "" : ",").append("{\"itemname\":\"Item ").append(i)
+                        .append("\",\"itemdescription\":\"Description of item ").append(i)
+                        .append("\",\"itemvalue\":").append(1 + i % 100).append(".99,\"itemimage\":\"item")
+                        .append(i).append(".png\"}");
+            }
+            text.append(']');
+        }
+        body = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() {
+        jdbcTemplate.update("DELETE FROM item");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ItemImporter.ImportResult importItems() throws IOException {
+        ItemImporter.ImportResult result = itemImporter.importItems(new ByteArrayInputStream(body), format);
+        if (result.imported() != rows) {
+            throw new IllegalStateException("Imported " + result.imported() + " of " + rows + ": " + result.errors());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMeters;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of instrumenting one successful request: the old per-call registry lookups
+ * (counter + Timer.Sample + timer) against the meters bound once by EndpointMetricsInterceptor.
+ * Run with {@code -prof gc} to compare allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndpointInstrumentationBenchmark {
+
+    private PrometheusMeterRegistry meterRegistry;
+    private EndpointMeters endpointMeters;
+
+    @Setup
+    public void setUp() {
+        meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        endpointMeters = new EndpointMeters(meterRegistry, "bench_bound", "GET /items");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registryLookupPerCall() {
+        var sample = Timer.start(meterRegistry);
+        meterRegistry.counter("bench_lookup_success_total").increment();
+        sample.stop(meterRegistry.timer("bench_lookup_duration_seconds"));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void preBoundMeters() {
+        long start = System.nanoTime();
+        endpointMeters.record(true, System.nanoTime() - start);
+    }
+}
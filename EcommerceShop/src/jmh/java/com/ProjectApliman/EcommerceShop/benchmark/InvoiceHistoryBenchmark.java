@@ -0,0 +1,119 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.archive.InvoiceArchiver;
+import com.ProjectApliman.EcommerceShop.archive.InvoicePartitions;
+import com.ProjectApliman.EcommerceShop.archive.InvoicePeriods;
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of recent invoices as history grows. The hot window always holds the same 100k invoices
+ * of 10k customers; everything above that is older history spread over ten years, so the 100000
+ * case has none. With archived=true the archival job has moved the history out before measuring.
+ * Both reads are bounded to the hot window, as the endpoints do it: one customer's invoices, and
+ * the first page of the listing.
+ * <p>
+ * On in-memory H2 only archival keeps history out of the way; to see partition pruning with
+ * archived=false, point the run at a scratch MySQL database (see {@link RepositoryReadBenchmark#embeddedShop}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx8g")
+public class InvoiceHistoryBenchmark {
+
+    private static final int CUSTOMERS = 10_000;
+    private static final int ITEMS = 1000;
+    private static final int HOT_INVOICES = 100_000;
+    private static final int HISTORY_YEARS = 10;
+    private static final int PAGE_SIZE = 50;
+    private static final int BATCH = 10_000;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int invoices;
+
+    @Param({"false", "true"})
+    public boolean archived;
+
+    private ConfigurableApplicationContext context;
+    private InvoiceRepository invoiceRepository;
+    private Date since;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = RepositoryReadBenchmark.embeddedShop("invoice_history_" + invoices + "_" + archived,
+                // The jobs only run when the benchmark says so
+                "shop.invoice.archive.cron=-",
+                "shop.invoice.partitions.cron=-");
+        invoiceRepository = context.getBean(InvoiceRepository.class);
+        since = context.getBean(InvoicePeriods.class).hotSince();
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            users.add(new Object[]{(long) i, "user" + i, "User " + i, "user" + i + "@example.com"});
+        }
+        jdbc.batchUpdate("INSERT INTO user (id, username, name, email) VALUES (?, ?, ?, ?)", users);
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 1; i <= ITEMS; i++) {
+            items.add(new Object[]{(long) i, "Item " + i, "Description of item " + i, 1.0 + i % 100, "item" + i + ".png"});
+        }
+        jdbc.batchUpdate("INSERT INTO item (item_id, itemname, itemdescription, itemvalue, itemimage) VALUES (?, ?, ?, ?, ?)", items);
+
+        // Ids grow with the purchase date, as the sequence hands them out: history first, then the hot window
+        int history = invoices - HOT_INVOICES;
+        long hotStart = since.getTime() + TimeUnit.HOURS.toMillis(1);
+        long historyStart = hotStart - TimeUnit.DAYS.toMillis(365L * HISTORY_YEARS);
+        long now = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        List<Object[]> invoiceRows = new ArrayList<>(BATCH);
+        List<Object[]> lineRows = new ArrayList<>(BATCH);
+        for (int i = 1; i <= invoices; i++) {
+            long purchased = i <= history
+                    ? historyStart + (long) ((double) (i - 1) / history * (hotStart - historyStart - TimeUnit.HOURS.toMillis(2)))
+                    : hotStart + (long) ((double) (i - history - 1) / HOT_INVOICES * (now - hotStart));
+            invoiceRows.add(new Object[]{(long) i, 1L + i % CUSTOMERS, 10.0, new Timestamp(purchased)});
+            lineRows.add(new Object[]{(long) i, (long) i, 1L + i % ITEMS, 1, 10.0});
+            if (invoiceRows.size() == BATCH || i == invoices) {
+                jdbc.batchUpdate("INSERT INTO invoice (id, user_id, total_amount, purchase_date) VALUES (?, ?, ?, ?)", invoiceRows);
+                jdbc.batchUpdate("INSERT INTO invoice_item (id, invoice_id, item_id, quantity, price) VALUES (?, ?, ?, ?, ?)", lineRows);
+                invoiceRows.clear();
+                lineRows.clear();
+            }
+        }
+
+        if (archived) {
+            System.out.printf("%nArchived %d invoices%n", context.getBean(InvoiceArchiver.class).archive());
+        }
+        // Drops the emptied partitions on MySQL, does nothing on H2
+        context.getBean(InvoicePartitions.class).maintain();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Invoice> recentInvoicesOfCustomer() {
+        return invoiceRepository.findByCustomerId(1L + ThreadLocalRandom.current().nextInt(CUSTOMERS), since);
+    }
+
+    @Benchmark
+    public List<Invoice> firstListingPage() {
+        List<Long> ids = invoiceRepository.findIdsAfter(0L, since, PageRequest.ofSize(PAGE_SIZE));
+        return invoiceRepository.findWithLinesByIdIn(ids, since);
+    }
+}
@@ -0,0 +1,78 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.User;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialisation of one Invoice graph (user, lines and their items) as the
+ * invoice endpoints write it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceSerializationBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int lines;
+
+    private ObjectWriter writer;
+    private Invoice invoice;
+
+    @Setup
+    public void setUp() {
+        writer = new ObjectMapper().writer();
+        invoice = invoice(1L, lines);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return writer.writeValueAsBytes(invoice);
+    }
+
+    static Invoice invoice(long id, int lines) {
+        User user = new User();
+        user.setId(7);
+        user.setUsername("jdoe");
+        user.setName("Jane Doe");
+        user.setEmail("jane.doe@example.com");
+
+        Invoice invoice = new Invoice();
+        invoice.setId(id);
+        invoice.setUser(user);
+        List<InvoiceItem> items = new ArrayList<>(lines);
+        double total = 0;
+        for (int i = 0; i < lines; i++) {
+            Item item = new Item();
+            item.setItemId((long) i + 1);
+            item.setItemname("Item " + i);
+            item.setItemdescription("A reasonably descriptive text for item number " + i);
+            item.setItemvalue(9.99 + i);
+            item.setItemimage("https://cdn.example.com/items/" + i + ".png");
+
+            InvoiceItem line = new InvoiceItem();
+            line.setId(id * 1000 + i);
+            line.setInvoice(invoice);
+            line.setItem(item);
+            line.setQuantity(1 + i % 3);
+            line.setPrice(item.getItemvalue() * line.getQuantity());
+            total += line.getPrice();
+            items.add(line);
+        }
+        invoice.setItems(items);
+        invoice.setTotalAmount(total);
+        return invoice;
+    }
+}
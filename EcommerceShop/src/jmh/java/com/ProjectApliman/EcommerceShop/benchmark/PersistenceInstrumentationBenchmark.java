@@ -0,0 +1,93 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.metrics.InstrumentedDataSource;
+import com.ProjectApliman.EcommerceShop.metrics.PersistenceMetricsFilter;
+import com.ProjectApliman.EcommerceShop.metrics.SlowStatementLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the JDBC proxies InstrumentedDataSource hands out inside a request: the same request
+ * (connection, one prepared query, reading {@code rows} rows) through PersistenceMetricsFilter,
+ * against the plain data source and against the instrumented one. Both go through the filter, so
+ * the difference is the reflective dispatch and bookkeeping on every JDBC call. Uses one kept-open
+ * H2 connection so that pool and network time do not hide it; against a real database the
+ * overhead is a far smaller share. Run with {@code -prof gc} to compare allocation per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceInstrumentationBenchmark {
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    @Param({"1", "50"})
+    public int rows;
+
+    private SingleConnectionDataSource connection;
+    private DataSource dataSource;
+    private PersistenceMetricsFilter filter;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() throws Exception {
+        connection = new SingleConnectionDataSource(
+                "jdbc:h2:mem:persistence_instrumentation;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", true);
+        try (Connection c = connection.getConnection(); Statement statement = c.createStatement()) {
+            statement.execute("CREATE TABLE item (item_id BIGINT PRIMARY KEY, itemname VARCHAR(255), itemvalue DOUBLE)");
+            for (int i = 1; i <= 1000; i++) {
+                statement.execute("INSERT INTO item VALUES (" + i + ", 'Item " + i + "', " + i + ".0)");
+            }
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        dataSource = instrumented
+                ? new InstrumentedDataSource(connection, new SlowStatementLog(meterRegistry, Duration.ofSeconds(1), 0.1, 10))
+                : connection;
+        filter = new PersistenceMetricsFilter(meterRegistry, true);
+        request = new MockHttpServletRequest("GET", "/items");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/items");
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.destroy();
+    }
+
+    @Benchmark
+    public void request(Blackhole blackhole) throws Exception {
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            try (Connection c = dataSource.getConnection();
+                 PreparedStatement statement = c.prepareStatement(
+                         "SELECT item_id, itemname, itemvalue FROM item WHERE item_id <= ? ORDER BY item_id")) {
+                statement.setInt(1, rows);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        blackhole.consume(resultSet.getLong(1));
+                        blackhole.consume(resultSet.getString(2));
+                        blackhole.consume(resultSet.getDouble(3));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.controller.InvoiceController;
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent checkouts through InvoiceController.createInvoice, per-request transactions (DIRECT)
+ * against the group-commit queue (GROUP_COMMIT). Reports throughput and the latency distribution
+ * each caller sees. On in-memory H2 a commit costs almost nothing, so the gap mostly shows the
+ * batching of statements; point the run at MySQL (see {@link RepositoryReadBenchmark#embeddedShop})
+ * to include real commit latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(64)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PurchaseModeBenchmark {
+
+    private static final int USERS = 1000;
+    private static final int ITEMS = 1000;
+    private static final int LINES = 3;
+
+    @Param({"DIRECT", "GROUP_COMMIT"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+    private InvoiceController invoiceController;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = RepositoryReadBenchmark.embeddedShop("purchases_" + mode.toLowerCase(),
+                "shop.purchase.mode=" + mode,
+                "spring.datasource.hikari.maximum-pool-size=20");
+        invoiceController = context.getBean(InvoiceController.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 1; i <= USERS; i++) {
+            users.add(new Object[]{(long) i, "user" + i, "User " + i, "user" + i + "@example.com"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user (id, username, name, email) VALUES (?, ?, ?, ?)", users);
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 1; i <= ITEMS; i++) {
+            items.add(new Object[]{(long) i, "Item " + i, "Description of item " + i, 1.0 + i % 100, "item" + i + ".png"});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO item (item_id, itemname, itemdescription, itemvalue, itemimage) VALUES (?, ?, ?, ?, ?)", items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ResponseEntity<Invoice> purchase() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Lines are persisted as they are, so every call builds a fresh basket
+        List<InvoiceItem> basket = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            Item item = new Item();
+            item.setItemId(1L + random.nextInt(ITEMS));
+            InvoiceItem line = new InvoiceItem();
+            line.setItem(item);
+            line.setQuantity(1 + random.nextInt(3));
+            basket.add(line);
+        }
+        return invoiceController.createInvoice(1L + random.nextInt(USERS), basket, null);
+    }
+}
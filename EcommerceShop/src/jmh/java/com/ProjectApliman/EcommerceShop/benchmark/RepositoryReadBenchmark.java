@@ -0,0 +1,98 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.EcommerceShopApplication;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ItemRepository.findAll against keyset pages (the /items?after=&limit= path), through the real
+ * Spring Data repositories on an embedded H2 database in MySQL mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class RepositoryReadBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private ItemRepository itemRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = embeddedShop("reads");
+        itemRepository = context.getBean(ItemRepository.class);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            batch.add(new Object[]{"Item " + i, "Description of item " + i, 1.0 + i % 100, "item" + i + ".png"});
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO item (itemname, itemdescription, itemvalue, itemimage) VALUES (?, ?, ?, ?)", batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Item> findAll() {
+        return itemRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Item> firstKeysetPage() {
+        return itemRepository.findByItemIdGreaterThanOrderByItemIdAsc(0L, PageRequest.ofSize(PAGE_SIZE));
+    }
+
+    // Reads the whole table page by page, as a client following X-Next-Cursor would
+    @Benchmark
+    public int keysetWalk() {
+        long after = 0;
+        int read = 0;
+        List<Item> page;
+        do {
+            page = itemRepository.findByItemIdGreaterThanOrderByItemIdAsc(after, PageRequest.ofSize(PAGE_SIZE));
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getItemId();
+            }
+            read += page.size();
+        } while (page.size() == PAGE_SIZE);
+        return read;
+    }
+
+    // The application on a random port (SecurityConfig needs a servlet context), on a fresh H2 database in MySQL mode.
+    // -jvmArgsAppend -Dspring.datasource.url=... points a run at a real server instead (migrated like the app, rows are left behind)
+    static ConfigurableApplicationContext embeddedShop(String database, String... properties) {
+        List<String> settings = new ArrayList<>(List.of(
+                "spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "server.port=0",
+                "logging.level.root=WARN"));
+        settings.addAll(List.of(properties));
+        // Passed as arguments, which application.properties cannot override; a -D system property
+        // for the same key still wins, since the argument is then left out
+        String[] args = settings.stream()
+                .filter(setting -> System.getProperty(setting.substring(0, setting.indexOf('='))) == null)
+                .map(setting -> "--" + setting)
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(EcommerceShopApplication.class).run(args);
+    }
+}
@@ -0,0 +1,98 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.search.TrigramIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Item and user name search: the repositories' LOWER(name) LIKE '%term%' query against H2 in
+ * MySQL mode versus the trigram index, both resolving the matching ids over the same rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+
+    private static final String[] WORDS = {
+            "red", "blue", "green", "black", "steel", "wooden", "smart", "ultra", "mini", "pro",
+            "phone", "lamp", "chair", "table", "watch", "kettle", "camera", "speaker", "charger", "mouse"
+    };
+
+    // ItemRepository.findByItemnameContaining or UserRepository.findByNameContaining
+    @Param({"item", "user"})
+    public String table;
+
+    @Param("1000000")
+    public int rows;
+
+    // A common word, a rare word pair and a serial-number fragment
+    @Param({"lamp", "ultra kettle", "98765"})
+    public String term;
+
+    private Connection connection;
+    private PreparedStatement likeQuery;
+    private TrigramIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String idColumn = table.equals("item") ? "item_id" : "id";
+        String nameColumn = table.equals("item") ? "itemname" : "name";
+        connection = DriverManager.getConnection("jdbc:h2:mem:search;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER");
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS " + table);
+            ddl.execute("CREATE TABLE " + table + " (" + idColumn + " BIGINT PRIMARY KEY, " + nameColumn + " VARCHAR(255))");
+        }
+        index = new TrigramIndex();
+        Random random = new Random(42);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (" + idColumn + ", " + nameColumn + ") VALUES (?, ?)")) {
+            for (int id = 1; id <= rows; id++) {
+                String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + id;
+                insert.setLong(1, id);
+                insert.setString(2, name);
+                insert.addBatch();
+                index.put(id, name);
+                if (id % 10_000 == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        // Same predicate as the repositories' LIKE search
+        likeQuery = connection.prepareStatement("SELECT " + idColumn + " FROM " + table
+                + " WHERE LOWER(" + nameColumn + ") LIKE LOWER(CONCAT('%', ?, '%'))");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void likeQuery(Blackhole blackhole) throws SQLException {
+        likeQuery.setString(1, term);
+        try (ResultSet resultSet = likeQuery.executeQuery()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getLong(1));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Long> trigramIndex() {
+        return index.search(term);
+    }
+}
@@ -0,0 +1,105 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.archive.InvoicePeriods;
+import com.ProjectApliman.EcommerceShop.repository.Fieldset;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.ProjectionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full entities against fields= projections for the item and invoice listings: query plus
+ * serialisation, as the endpoints do it. The payload sizes of both are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class SparseFieldsBenchmark {
+
+    private static final int LINES_PER_INVOICE = 5;
+
+    // What a product list or an order history page actually shows
+    private static final Fieldset ITEM_FIELDS = Fieldset.parse("itemname,itemvalue", ProjectionRepository.ITEM_FIELDS);
+    private static final Fieldset INVOICE_FIELDS = Fieldset.parse("purchaseDate,totalAmount,items.itemname,items.quantity",
+            ProjectionRepository.INVOICE_FIELDS, ProjectionRepository.INVOICE_LINE_FIELDS);
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private ItemRepository itemRepository;
+    private InvoiceRepository invoiceRepository;
+    private ProjectionRepository projectionRepository;
+    private ObjectWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        context = RepositoryReadBenchmark.embeddedShop("sparse_fields");
+        itemRepository = context.getBean(ItemRepository.class);
+        invoiceRepository = context.getBean(InvoiceRepository.class);
+        projectionRepository = context.getBean(ProjectionRepository.class);
+        writer = context.getBean(ObjectMapper.class).writer();
+
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            items.add(new Object[]{i, "Item " + i, "A reasonably descriptive text for item number " + i,
+                    9.99 + i % 100, "https://cdn.example.com/items/" + i + ".png"});
+        }
+        jdbc.batchUpdate("INSERT INTO item (item_id, itemname, itemdescription, itemvalue, itemimage) VALUES (?, ?, ?, ?, ?)", items);
+        jdbc.update("INSERT INTO user (id, username, name, email) VALUES (1, 'jdoe', 'Jane Doe', 'jane.doe@example.com')");
+        // One invoice per ten items, so the invoice listing stays the same order of size
+        List<Object[]> invoices = new ArrayList<>();
+        List<Object[]> lines = new ArrayList<>();
+        for (int i = 1; i <= rows / 10; i++) {
+            invoices.add(new Object[]{i, 1, 50.0});
+            for (int l = 0; l < LINES_PER_INVOICE; l++) {
+                lines.add(new Object[]{i * LINES_PER_INVOICE + l, i, 1 + (i + l) % rows, 1 + l % 3, 10.0});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO invoice (id, user_id, total_amount, purchase_date) VALUES (?, ?, ?, CURRENT_TIMESTAMP)", invoices);
+        jdbc.batchUpdate("INSERT INTO invoice_item (id, invoice_id, item_id, quantity, price) VALUES (?, ?, ?, ?, ?)", lines);
+
+        System.out.printf("%n/items: %d bytes full, %d bytes with fields=itemname,itemvalue%n",
+                fullItems().length, sparseItems().length);
+        System.out.printf("/invoice/all: %d bytes full, %d bytes with fields=purchaseDate,totalAmount,items.itemname,items.quantity%n",
+                fullInvoices().length, sparseInvoices().length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] fullItems() throws JsonProcessingException {
+        return writer.writeValueAsBytes(itemRepository.findAll());
+    }
+
+    @Benchmark
+    public byte[] sparseItems() throws JsonProcessingException {
+        return writer.writeValueAsBytes(projectionRepository.items(ITEM_FIELDS, null, null));
+    }
+
+    @Benchmark
+    public byte[] fullInvoices() throws JsonProcessingException {
+        return writer.writeValueAsBytes(invoiceRepository.findSince(InvoicePeriods.ALL));
+    }
+
+    @Benchmark
+    public byte[] sparseInvoices() throws JsonProcessingException {
+        return writer.writeValueAsBytes(projectionRepository.invoices(INVOICE_FIELDS, null, InvoicePeriods.ALL));
+    }
+}
@@ -0,0 +1,144 @@
+package com.ProjectApliman.EcommerceShop.benchmark;
+
+import com.ProjectApliman.EcommerceShop.inventory.StockLedger;
+import com.ProjectApliman.EcommerceShop.inventory.StripedStock;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 64 threads selling out the same item, one unit per purchase: the striped in-memory counter
+ * alone, a single CAS counter, a conditional UPDATE on the stock row per purchase, and
+ * StockLedger itself (striped counter plus one journal insert per purchase transaction). Each
+ * iteration restocks, every thread buys until it is refused, and the score is the time until the
+ * last thread is; initialStock divided by it is the sell-out throughput. An iteration fails unless
+ * exactly initialStock units were sold and none are left, for LEDGER also in item_stock once the
+ * journal is flushed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Threads(64)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class StockContentionBenchmark {
+
+    private static final long ITEM_ID = 1;
+    private static final Map<Long, Long> ONE_UNIT = Map.of(ITEM_ID, 1L);
+
+    @Param({"STRIPED", "SINGLE_COUNTER", "ROW_UPDATE", "LEDGER"})
+    public String strategy;
+
+    // Small enough that the database strategies sell out in well under a second
+    @Param({"20000"})
+    public long initialStock;
+
+    private StripedStock striped;
+    private AtomicLong single;
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private StockLedger stockLedger;
+
+    private final LongAdder sold = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        if (strategy.equals("ROW_UPDATE") || strategy.equals("LEDGER")) {
+            context = RepositoryReadBenchmark.embeddedShop("stock_" + strategy.toLowerCase());
+            jdbcTemplate = context.getBean(JdbcTemplate.class);
+            stockLedger = context.getBean(StockLedger.class);
+            jdbcTemplate.update("INSERT INTO item_stock (item_id, available) VALUES (?, 0)", ITEM_ID);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        sold.reset();
+        switch (strategy) {
+            case "STRIPED" -> striped = new StripedStock(16, initialStock);
+            case "SINGLE_COUNTER" -> single = new AtomicLong(initialStock);
+            case "ROW_UPDATE" -> jdbcTemplate.update("UPDATE item_stock SET available = ? WHERE item_id = ?", initialStock, ITEM_ID);
+            default -> stockLedger.setAvailable(ITEM_ID, initialStock);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkSoldOutExactly() {
+        long remaining = switch (strategy) {
+            case "STRIPED" -> striped.available();
+            case "SINGLE_COUNTER" -> single.get();
+            case "ROW_UPDATE" -> stockRow();
+            default -> {
+                long counted = stockLedger.available(ITEM_ID).orElseThrow();
+                stockLedger.flush();
+                long stored = stockRow();
+                if (stored != counted) {
+                    throw new IllegalStateException("item_stock has " + stored + " units, the counter " + counted);
+                }
+                yield stored;
+            }
+        };
+        if (remaining != 0 || sold.sum() != initialStock) {
+            throw new IllegalStateException("Sold " + sold.sum() + " of " + initialStock + ", " + remaining + " remaining");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Benchmark
+    public long sellOut() {
+        long bought = 0;
+        while (buyOne()) {
+            bought++;
+        }
+        sold.add(bought);
+        return bought;
+    }
+
+    private boolean buyOne() {
+        return switch (strategy) {
+            case "STRIPED" -> striped.tryTake(1);
+            case "SINGLE_COUNTER" -> takeOne(single);
+            case "ROW_UPDATE" -> jdbcTemplate.update(
+                    "UPDATE item_stock SET available = available - 1 WHERE item_id = ? AND available >= 1", ITEM_ID) == 1;
+            default -> reserveOne();
+        };
+    }
+
+    // A purchase transaction with nothing but the stock: admission and the journal insert
+    private boolean reserveOne() {
+        try {
+            stockLedger.reserve(ONE_UNIT);
+            return true;
+        } catch (ResponseStatusException e) {
+            return false;
+        }
+    }
+
+    private long stockRow() {
+        return jdbcTemplate.queryForObject("SELECT available FROM item_stock WHERE item_id = ?", Long.class, ITEM_ID);
+    }
+
+    private static boolean takeOne(AtomicLong counter) {
+        long current;
+        do {
+            current = counter.get();
+            if (current < 1) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - 1));
+        return true;
+    }
+}
@@ -0,0 +1,134 @@
+package com.ProjectApliman.EcommerceShop.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the write endpoints: each client is rate limited by a token bucket, and
+ * all clients together by an adaptive concurrency limit. Requests over either are answered at
+ * once, before security, controllers or the connection pool are involved: 429 when the client
+ * is over its rate, 503 when the server is at its limit, both with {@code Retry-After}.
+ * Reads never pass through here, so the catalog stays responsive while purchases are shed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private final boolean enabled;
+    private final List<String> paths;
+    private final String clientHeader;
+    private final ClientRateLimiter rateLimiter;
+    private final AimdConcurrencyLimit concurrencyLimit;
+    private final Counter admitted;
+    private final Counter rateLimited;
+    private final Counter overloaded;
+
+    public AdmissionFilter(MeterRegistry meterRegistry,
+                           @Value("${shop.admission.enabled:true}") boolean enabled,
+                           @Value("${shop.admission.paths:/invoice/purchase/**,/user,/user/**}") List<String> paths,
+                           @Value("${shop.admission.client-header:}") String clientHeader,
+                           @Value("${shop.admission.client-rate:20}") double clientRate,
+                           @Value("${shop.admission.client-burst:40}") int clientBurst,
+                           @Value("${shop.admission.max-clients:100000}") int maxClients,
+                           @Value("${shop.admission.initial-limit:8}") int initialLimit,
+                           @Value("${shop.admission.min-limit:1}") int minLimit,
+                           @Value("${shop.admission.max-limit:16}") int maxLimit,
+                           @Value("${shop.admission.backoff:0.9}") double backoff,
+                           @Value("${shop.admission.latency-threshold:250ms}") Duration latencyThreshold) {
+        this.enabled = enabled;
+        this.paths = paths;
+        this.clientHeader = clientHeader;
+        this.rateLimiter = new ClientRateLimiter(clientRate, clientBurst, maxClients);
+        this.concurrencyLimit = new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit, backoff, latencyThreshold.toNanos());
+        this.admitted = meterRegistry.counter("admission_admitted_total");
+        this.rateLimited = meterRegistry.counter("admission_rejected_total", "reason", "rate_limited");
+        this.overloaded = meterRegistry.counter("admission_rejected_total", "reason", "overloaded");
+        Gauge.builder("admission_concurrency_limit", concurrencyLimit, AimdConcurrencyLimit::limit).register(meterRegistry);
+        Gauge.builder("admission_in_flight", concurrencyLimit, AimdConcurrencyLimit::inFlight).register(meterRegistry);
+        Gauge.builder("admission_clients", rateLimiter, ClientRateLimiter::clients).register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || isRead(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String pattern : paths) {
+            if (PATHS.match(pattern, path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long wait = rateLimiter.tryAcquire(client(request));
+        if (wait > 0) {
+            rateLimited.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(wait) + 1);
+            return;
+        }
+        if (!concurrencyLimit.tryAcquire()) {
+            overloaded.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1);
+            return;
+        }
+        admitted.increment();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            // An exception leaves the status at 200 until the error page is rendered; it and any
+            // server error count against the limit rather than as a fast success
+            concurrencyLimit.release(System.nanoTime() - start, failed || response.getStatus() >= 500);
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        if (StringUtils.hasText(clientHeader)) {
+            String forwarded = request.getHeader(clientHeader);
+            if (StringUtils.hasText(forwarded)) {
+                // X-Forwarded-For style lists: the first entry is the original client
+                int comma = forwarded.indexOf(',');
+                return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    // No body, so a rejection costs neither an error dispatch nor serialisation
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    }
+
+    private static boolean isRead(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+}
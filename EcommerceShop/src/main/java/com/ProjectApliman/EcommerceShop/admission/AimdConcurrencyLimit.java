@@ -0,0 +1,74 @@
+package com.ProjectApliman.EcommerceShop.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrency limit that adapts to observed latency (additive increase, multiplicative
+ * decrease): every request finishing within {@code latencyThreshold} while the limit is in use
+ * raises it by {@code 1/limit}, so by about one per limit's worth of requests; a slower one, or
+ * one that failed or was itself shed downstream, cuts it by {@code backoff}. The limit settles just below
+ * the concurrency at which the database starts queueing.
+ */
+public final class AimdConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoff;
+    private final long latencyThresholdNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // The limit as double bits, so it can grow by fractions and still be updated with a CAS
+    private final AtomicLong limit;
+
+    public AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoff, long latencyThresholdNanos) {
+        if (minLimit < 1 || minLimit > maxLimit || backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("need 1 <= min <= max and 0 < backoff < 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoff = backoff;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(Math.clamp(initialLimit, minLimit, maxLimit)));
+    }
+
+    /** Takes a slot if fewer than {@link #limit()} requests are in flight; pair with {@link #release}. */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives the slot back and adjusts the limit.
+     *
+     * @param overloaded the request failed or was turned away further down (e.g. a full purchase queue)
+     */
+    public void release(long latencyNanos, boolean overloaded) {
+        int before = inFlight.getAndDecrement();
+        if (overloaded || latencyNanos > latencyThresholdNanos) {
+            limit.getAndUpdate(bits -> Double.doubleToRawLongBits(
+                    Math.max(minLimit, Double.longBitsToDouble(bits) * backoff)));
+        } else if (before * 2 >= limit()) {
+            // Only grow while the limit is actually being used, or an idle hour would leave it at max
+            limit.getAndUpdate(bits -> {
+                double current = Double.longBitsToDouble(bits);
+                return Double.doubleToRawLongBits(Math.min(maxLimit, current + 1 / current));
+            });
+        }
+    }
+
+    public int limit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,67 @@
+package com.ProjectApliman.EcommerceShop.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per client, each held in a single {@link AtomicLong}: the bucket stores the
+ * time at which it would be full again (the generic cell rate algorithm), so taking a token is
+ * one compare-and-set with no lock and no refill thread. A client may send {@code burst}
+ * requests at once and {@code ratePerSecond} after that.
+ */
+public final class ClientRateLimiter {
+
+    private final LongSupplier nanoTime;
+    private final long intervalNanos;
+    private final long burstNanos;
+    // A bucket idle for longer than the burst window is full again, so dropping it loses nothing
+    private final Cache<String, AtomicLong> buckets;
+
+    public ClientRateLimiter(double ratePerSecond, int burst, int maxClients) {
+        this(ratePerSecond, burst, maxClients, System::nanoTime);
+    }
+
+    // Tests step the clock by hand
+    ClientRateLimiter(double ratePerSecond, int burst, int maxClients, LongSupplier nanoTime) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive");
+        }
+        this.nanoTime = nanoTime;
+        this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(burstNanos + intervalNanos))
+                .ticker(nanoTime::getAsLong)
+                .build();
+    }
+
+    /**
+     * Takes a token from the client's bucket.
+     *
+     * @return 0 if the request is admitted, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String client) {
+        AtomicLong fullAt = buckets.get(client, key -> new AtomicLong(nanoTime.getAsLong()));
+        while (true) {
+            long now = nanoTime.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long clients() {
+        return buckets.estimatedSize();
+    }
+}
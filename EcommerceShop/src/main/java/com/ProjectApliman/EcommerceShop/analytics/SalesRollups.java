@@ -0,0 +1,175 @@
+package com.ProjectApliman.EcommerceShop.analytics;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceArchiveRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.ProjectApliman.EcommerceShop.service.PurchaseCommittedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running sales totals per user, per item and per day. Rebuilt from the database at startup (hot
+ * and archived invoices), then updated by every committed purchase; every read is a single map lookup.
+ * Amounts are accumulated in cents so concurrent updates never lose precision.
+ */
+@Component
+public class SalesRollups implements SmartInitializingSingleton {
+
+    public record UserSales(long userId, long invoices, double revenue) {
+    }
+
+    public record ItemSales(long itemId, long units, double revenue) {
+    }
+
+    public record DailySales(LocalDate date, long invoices, double revenue) {
+    }
+
+    public record SalesSummary(long invoices, double revenue) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(SalesRollups.class);
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceItemRepository invoiceItemRepository;
+    private final InvoiceArchiveRepository invoiceArchiveRepository;
+    private final TransactionTemplate primaryRead;
+
+    private final Map<Long, Totals> byUser = new ConcurrentHashMap<>();
+    private final Map<Long, Totals> byItem = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Totals> byDay = new ConcurrentHashMap<>();
+    private final Totals overall = new Totals();
+
+    public SalesRollups(InvoiceRepository invoiceRepository, InvoiceItemRepository invoiceItemRepository,
+                        InvoiceArchiveRepository invoiceArchiveRepository, PlatformTransactionManager transactionManager) {
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceItemRepository = invoiceItemRepository;
+        this.invoiceArchiveRepository = invoiceArchiveRepository;
+        this.primaryRead = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.nanoTime();
+        // Read from the primary: totals rebuilt from a lagging replica would stay short for good
+        primaryRead.executeWithoutResult(status -> load());
+        log.info("Sales rollups rebuilt for {} users, {} items, {} days in {} ms",
+                byUser.size(), byItem.size(), byDay.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // An invoice is in exactly one of the two stores, and both are read in the same transaction
+    private void load() {
+        addUserTotals(invoiceRepository.totalsByUser());
+        addUserTotals(invoiceArchiveRepository.totalsByUser());
+        addDayTotals(invoiceRepository.totalsByDay());
+        addDayTotals(invoiceArchiveRepository.totalsByDay());
+        addItemTotals(invoiceItemRepository.totalsByItem());
+        addItemTotals(invoiceArchiveRepository.totalsByItem());
+    }
+
+    private void addUserTotals(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            totals(byUser, ((Number) row[0]).longValue()).add(((Number) row[1]).longValue(), (Number) row[2]);
+        }
+    }
+
+    private void addDayTotals(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            totals(byDay, toLocalDate(row[0])).add(((Number) row[1]).longValue(), (Number) row[2]);
+            overall.add(((Number) row[1]).longValue(), (Number) row[2]);
+        }
+    }
+
+    private void addItemTotals(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            totals(byItem, ((Number) row[0]).longValue()).add(((Number) row[1]).longValue(), (Number) row[2]);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onPurchaseCommitted(PurchaseCommittedEvent event) {
+        record(event.invoice());
+    }
+
+    public void record(Invoice invoice) {
+        long cents = toCents(invoice.getTotalAmount());
+        totals(byUser, invoice.getUser().getId()).add(1, cents);
+        totals(byDay, dayOf(invoice)).add(1, cents);
+        overall.add(1, cents);
+        for (InvoiceItem line : invoice.getItems()) {
+            totals(byItem, line.getItem().getItemId()).add(line.getQuantity(), toCents(line.getPrice()));
+        }
+    }
+
+    public UserSales user(long userId) {
+        Totals totals = byUser.get(userId);
+        return totals == null ? new UserSales(userId, 0, 0) : new UserSales(userId, totals.count(), totals.revenue());
+    }
+
+    public ItemSales item(long itemId) {
+        Totals totals = byItem.get(itemId);
+        return totals == null ? new ItemSales(itemId, 0, 0) : new ItemSales(itemId, totals.count(), totals.revenue());
+    }
+
+    public DailySales day(LocalDate date) {
+        Totals totals = byDay.get(date);
+        return totals == null ? new DailySales(date, 0, 0) : new DailySales(date, totals.count(), totals.revenue());
+    }
+
+    public SalesSummary summary() {
+        return new SalesSummary(overall.count(), overall.revenue());
+    }
+
+    private static <K> Totals totals(Map<K, Totals> map, K key) {
+        Totals totals = map.get(key);
+        return totals != null ? totals : map.computeIfAbsent(key, k -> new Totals());
+    }
+
+    private static LocalDate dayOf(Invoice invoice) {
+        return invoice.getPurchaseDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) value;
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    // Invoice count (or units for items) and revenue in cents
+    private static final class Totals {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder cents = new LongAdder();
+
+        void add(long count, long cents) {
+            this.count.add(count);
+            this.cents.add(cents);
+        }
+
+        void add(long count, Number amount) {
+            add(count, toCents(amount == null ? 0 : amount.doubleValue()));
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double revenue() {
+            return cents.sum() / 100.0;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ProjectApliman.EcommerceShop.archive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves invoices purchased before the hot window, with their lines, from the invoice tables to
+ * the archive tables. Each chunk of {@code shop.invoice.archive.chunk-size} invoices is copied and
+ * deleted in one transaction on the primary, so an invoice is always in exactly one of the two.
+ * Sales rollups are unaffected: they count both stores.
+ */
+@Component
+public class InvoiceArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceArchiver.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InvoicePeriods invoicePeriods;
+    private final int chunkSize;
+    private final Counter archivedInvoices;
+    private final Timer runs;
+
+    public InvoiceArchiver(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           InvoicePeriods invoicePeriods, MeterRegistry meterRegistry,
+                           @Value("${shop.invoice.archive.chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.invoicePeriods = invoicePeriods;
+        this.chunkSize = chunkSize;
+        this.archivedInvoices = meterRegistry.counter("invoice_archived_total");
+        this.runs = meterRegistry.timer("invoice_archive_duration_seconds");
+    }
+
+    /** Archives everything purchased before the hot window; returns the number of invoices moved. */
+    @Scheduled(cron = "${shop.invoice.archive.cron:0 0 3 * * *}")
+    public synchronized long archive() {
+        Date cutoff = invoicePeriods.hotSince();
+        long start = System.nanoTime();
+        long moved = 0;
+        int chunk;
+        do {
+            chunk = Objects.requireNonNullElse(transactionTemplate.execute(status -> moveChunk(cutoff)), 0);
+            archivedInvoices.increment(chunk);
+            moved += chunk;
+        } while (chunk == chunkSize);
+        long elapsed = System.nanoTime() - start;
+        runs.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Archived {} invoices purchased before {} in {} ms", moved, cutoff, elapsed / 1_000_000);
+        return moved;
+    }
+
+    private int moveChunk(Date cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM invoice WHERE purchase_date < ? ORDER BY purchase_date LIMIT ?", Long.class, cutoff, chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] idArgs = ids.toArray();
+        // The purchase_date bound on invoice lets MySQL touch only the partitions being emptied
+        List<Object> invoiceArgs = new ArrayList<>(ids);
+        invoiceArgs.add(cutoff);
+        jdbcTemplate.update("INSERT INTO invoice_item_archive (id, invoice_id, item_id, quantity, price) "
+                + "SELECT id, invoice_id, item_id, quantity, price FROM invoice_item WHERE invoice_id IN (" + in + ")", idArgs);
+        jdbcTemplate.update("INSERT INTO invoice_archive (id, user_id, total_amount, purchase_date) "
+                + "SELECT id, user_id, total_amount, purchase_date FROM invoice WHERE id IN (" + in + ") AND purchase_date < ?",
+                invoiceArgs.toArray());
+        jdbcTemplate.update("DELETE FROM invoice_item WHERE invoice_id IN (" + in + ")", idArgs);
+        jdbcTemplate.update("DELETE FROM invoice WHERE id IN (" + in + ") AND purchase_date < ?", invoiceArgs.toArray());
+        return ids.size();
+    }
+}
@@ -0,0 +1,117 @@
+package com.ProjectApliman.EcommerceShop.archive;
+
+import com.ProjectApliman.EcommerceShop.model.ArchivedInvoice;
+import com.ProjectApliman.EcommerceShop.model.ArchivedInvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.User;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceArchiveRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.UserRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A customer's complete purchase history: the hot table without the window bound plus the
+ * archive. Archived invoices come back in the same shape as hot ones, with their user and items.
+ */
+@Component
+public class InvoiceHistory {
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceArchiveRepository invoiceArchiveRepository;
+    private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public InvoiceHistory(InvoiceRepository invoiceRepository, InvoiceArchiveRepository invoiceArchiveRepository,
+                          UserRepository userRepository, ItemRepository itemRepository,
+                          PlatformTransactionManager transactionManager) {
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceArchiveRepository = invoiceArchiveRepository;
+        this.userRepository = userRepository;
+        this.itemRepository = itemRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /** Every invoice of the given users, hot and archived, in id order. */
+    public List<Invoice> forCustomers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return readOnlyTransaction.execute(status -> {
+            Map<Long, Invoice> invoices = new TreeMap<>();
+            // Hot table first: an invoice archived between the two reads is then found twice
+            // (and kept once) rather than not at all
+            for (Invoice invoice : invoiceRepository.findByCustomerIdIn(userIds, InvoicePeriods.ALL)) {
+                invoices.put(invoice.getId(), invoice);
+            }
+            for (Invoice invoice : archived(userIds)) {
+                invoices.putIfAbsent(invoice.getId(), invoice);
+            }
+            return new ArrayList<>(invoices.values());
+        });
+    }
+
+    private List<Invoice> archived(Collection<Long> userIds) {
+        List<ArchivedInvoice> archived = invoiceArchiveRepository.findByUserIdIn(userIds);
+        if (archived.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<ArchivedInvoiceItem>> lines = invoiceArchiveRepository
+                .findLinesByInvoiceIdIn(archived.stream().map(ArchivedInvoice::getId).toList()).stream()
+                .collect(Collectors.groupingBy(ArchivedInvoiceItem::getInvoiceId));
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<Long, Item> items = itemRepository.findAllById(lines.values().stream()
+                        .flatMap(List::stream).map(ArchivedInvoiceItem::getItemId).distinct().toList()).stream()
+                .collect(Collectors.toMap(Item::getItemId, Function.identity()));
+
+        List<Invoice> invoices = new ArrayList<>(archived.size());
+        for (ArchivedInvoice row : archived) {
+            Invoice invoice = new Invoice();
+            invoice.setId(row.getId());
+            invoice.setUser(users.computeIfAbsent(row.getUserId(), InvoiceHistory::missingUser));
+            invoice.setTotalAmount(row.getTotalAmount());
+            invoice.setPurchaseDate(row.getPurchaseDate());
+            List<InvoiceItem> invoiceLines = new ArrayList<>();
+            for (ArchivedInvoiceItem lineRow : lines.getOrDefault(row.getId(), List.of())) {
+                InvoiceItem line = new InvoiceItem();
+                line.setId(lineRow.getId());
+                line.setInvoice(invoice);
+                line.setItem(items.computeIfAbsent(lineRow.getItemId(), InvoiceHistory::missingItem));
+                line.setQuantity(lineRow.getQuantity());
+                line.setPrice(lineRow.getPrice());
+                invoiceLines.add(line);
+            }
+            invoice.setItems(invoiceLines);
+            invoices.add(invoice);
+        }
+        return invoices;
+    }
+
+    // Archived lines outlive deleted items; they keep the id and nothing else
+    private static Item missingItem(Long itemId) {
+        Item item = new Item();
+        item.setItemId(itemId);
+        return item;
+    }
+
+    private static User missingUser(Long userId) {
+        User user = new User();
+        user.setId(userId);
+        return user;
+    }
+}
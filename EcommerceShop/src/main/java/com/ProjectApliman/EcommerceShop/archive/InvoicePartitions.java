@@ -0,0 +1,118 @@
+package com.ProjectApliman.EcommerceShop.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Monthly partitions of the invoice table on MySQL. V4_1__partition_invoices.sql creates them up
+ * to {@code shop.invoice.partitions.months-ahead} months ahead; every day this splits the
+ * catch-all pmax partition, empty by then, to keep that many months ahead, and drops partitions
+ * that end before the hot window once the archival job has emptied them. Nothing runs at startup,
+ * and nothing at all on other databases.
+ */
+@Component
+public class InvoicePartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(InvoicePartitions.class);
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final String MAXVALUE_PARTITION = "pmax";
+
+    // upperBound is the first day after the partition (VALUES LESS THAN), null for pmax
+    private record Partition(String name, LocalDate upperBound) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InvoicePeriods invoicePeriods;
+    private final int monthsAhead;
+    private Boolean partitioned;
+
+    public InvoicePartitions(JdbcTemplate jdbcTemplate, InvoicePeriods invoicePeriods,
+                             @Value("${shop.invoice.partitions.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.invoicePeriods = invoicePeriods;
+        this.monthsAhead = monthsAhead;
+    }
+
+    @Scheduled(cron = "${shop.invoice.partitions.cron:0 30 3 * * *}")
+    public synchronized void maintain() {
+        if (!isPartitioned()) {
+            return;
+        }
+        List<Partition> partitions = partitions();
+        addMonths(partitions);
+        dropArchived(partitions);
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            partitioned = "MySQL".equals(database) && !partitions().isEmpty();
+        }
+        return partitioned;
+    }
+
+    private List<Partition> partitions() {
+        return jdbcTemplate.query("SELECT partition_name, partition_description FROM information_schema.partitions "
+                        + "WHERE table_schema = DATABASE() AND table_name = 'invoice' AND partition_name IS NOT NULL "
+                        + "ORDER BY partition_ordinal_position",
+                (rs, row) -> new Partition(rs.getString(1), upperBound(rs.getString(2))));
+    }
+
+    // RANGE COLUMNS bounds read back as '2026-11-01 00:00:00', or MAXVALUE
+    private static LocalDate upperBound(String description) {
+        return "MAXVALUE".equals(description) ? null : LocalDate.parse(description.replace("'", "").substring(0, 10));
+    }
+
+    private void addMonths(List<Partition> partitions) {
+        LocalDate lastBound = partitions.stream().map(Partition::upperBound)
+                .filter(Objects::nonNull).reduce((first, second) -> second).orElse(null);
+        if (lastBound == null) {
+            // Not laid out by the migration; splitting a full pmax would copy the whole table
+            log.warn("Invoice table has no monthly partitions, not adding any");
+            return;
+        }
+        YearMonth month = YearMonth.from(lastBound);
+        YearMonth last = YearMonth.now().plusMonths(monthsAhead);
+        if (month.isAfter(last)) {
+            return;
+        }
+        List<String> definitions = new ArrayList<>();
+        for (; !month.isAfter(last); month = month.plusMonths(1)) {
+            definitions.add("PARTITION " + month.format(PARTITION_NAME)
+                    + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+        definitions.add("PARTITION " + MAXVALUE_PARTITION + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE invoice REORGANIZE PARTITION " + MAXVALUE_PARTITION
+                + " INTO (" + String.join(", ", definitions) + ")");
+        log.info("Added {} monthly invoice partitions up to {}", definitions.size() - 1, last);
+    }
+
+    private void dropArchived(List<Partition> partitions) {
+        LocalDate hotSince = invoicePeriods.hotStart().atDay(1);
+        List<String> empty = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.upperBound() != null && !partition.upperBound().isAfter(hotSince)
+                    && !jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM invoice PARTITION (" + partition.name() + "))",
+                    Boolean.class)) {
+                empty.add(partition.name());
+            }
+        }
+        if (!empty.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE invoice DROP PARTITION " + String.join(", ", empty));
+            log.info("Dropped archived invoice partitions {}", empty);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.ProjectApliman.EcommerceShop.archive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * The hot window: invoices purchased in the current month and the {@code shop.invoice.hot-months}
+ * before it stay in the invoice table, older ones move to the archive. Purchase dates are local
+ * times (DATETIME columns written in the JVM's zone), and so are the period boundaries.
+ */
+@Component
+public class InvoicePeriods {
+
+    /** Lower bound that excludes nothing, for reads of the whole hot table. */
+    public static final Date ALL = startOf(YearMonth.of(1970, 1));
+
+    private final int hotMonths;
+
+    public InvoicePeriods(@Value("${shop.invoice.hot-months:12}") int hotMonths) {
+        if (hotMonths < 1) {
+            throw new IllegalArgumentException("shop.invoice.hot-months must be at least 1");
+        }
+        this.hotMonths = hotMonths;
+    }
+
+    /** First month of the hot window. */
+    public YearMonth hotStart() {
+        return YearMonth.now().minusMonths(hotMonths);
+    }
+
+    /** Start of the hot window; reads of recent invoices use it as their lower bound. */
+    public Date hotSince() {
+        return startOf(hotStart());
+    }
+
+    public static Date startOf(YearMonth month) {
+        return Date.from(month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,41 @@
+package com.ProjectApliman.EcommerceShop.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * CBOR and Smile responses for clients that ask for them with {@code Accept: application/cbor}
+ * or {@code application/x-jackson-smile}. Both mappers come from the same builder as the JSON
+ * one, so entities serialise with the same annotations and settings. They go after the JSON
+ * converter: a request without a preference still gets JSON.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    @Bean
+    public WebMvcConfigurer binaryFormatsConfigurer(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        MappingJackson2CborHttpMessageConverter cbor = new MappingJackson2CborHttpMessageConverter(
+                objectMapperBuilder.factory(new CBORFactory()).build());
+        MappingJackson2SmileHttpMessageConverter smile = new MappingJackson2SmileHttpMessageConverter(
+                objectMapperBuilder.factory(new SmileFactory()).build());
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // Replace the defaults Spring registers when the libraries are present, built without Boot's settings
+                converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                        || converter instanceof MappingJackson2SmileHttpMessageConverter);
+                converters.add(cbor);
+                converters.add(smile);
+            }
+        };
+    }
+}
@@ -16,6 +16,7 @@ public class CorsConfig {
                         .allowedOrigins("*") // Allows requests from ANY origin
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders("X-Next-Cursor", "ETag", "Retry-After", "Idempotent-Replayed")
                         .allowCredentials(false);
             }
         };
@@ -0,0 +1,67 @@
+package com.ProjectApliman.EcommerceShop.config;
+
+import com.ProjectApliman.EcommerceShop.metrics.InstrumentedDataSource;
+import com.ProjectApliman.EcommerceShop.metrics.SlowStatementLog;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * The primary pool from {@code spring.datasource.*} and, when {@code shop.datasource.replica.url}
+ * is set, a read replica pool. The DataSource everything uses hands out lazy connections that
+ * pick the replica for read-only transactions and the primary for everything else. Each pool is
+ * its own HikariDataSource bean, so it gets its own hikaricp_* metrics (pool="primary"/"replica").
+ * Both pools are wrapped for the per-request persistence metrics unless
+ * {@code shop.persistence.instrumentation.enabled} is false.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty("shop.datasource.replica.url")
+    @ConfigurationProperties("shop.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${shop.datasource.replica.url}") String url,
+                                              @Value("${shop.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${shop.datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replicaDataSource,
+                                 SlowStatementLog slowStatementLog,
+                                 @Value("${shop.persistence.instrumentation.enabled:true}") boolean instrumented) {
+        // Connections are only fetched on the first statement, once the transaction's read-only flag is known;
+        // a cache hit or 304 inside a transaction never touches either pool
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+                instrumented ? new InstrumentedDataSource(primaryDataSource, slowStatementLog) : primaryDataSource);
+        replicaDataSource.ifAvailable(replica -> dataSource.setReadOnlyDataSource(
+                instrumented ? new InstrumentedDataSource(replica, slowStatementLog) : replica));
+        return dataSource;
+    }
+}
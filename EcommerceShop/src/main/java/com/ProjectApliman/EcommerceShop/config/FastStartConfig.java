@@ -0,0 +1,34 @@
+package com.ProjectApliman.EcommerceShop.config;
+
+import com.ProjectApliman.EcommerceShop.EcommerceShopApplication;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Startup settings for the {@code faststart} profile (see application-faststart.properties).
+ * Lazy initialisation is meant for auto-configuration nobody uses; the shop's own beans stay eager
+ * because several of them do their work at startup (search indexes, catalog snapshot, stock counts,
+ * sales rollups, group-commit worker) or on a schedule (stock journal flush, invoice archiving) and
+ * would otherwise wait for the first request to touch them.
+ */
+@Configuration
+@Profile("faststart")
+public class FastStartConfig {
+
+    private static final String SHOP_PACKAGE = EcommerceShopApplication.class.getPackageName();
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerShopBeans() {
+        return (beanName, definition, beanType) -> beanType != null && beanType.getPackageName().startsWith(SHOP_PACKAGE);
+    }
+
+    // Migrations run once from the deploy step; an instance only checks the schema is at the
+    // version it was built for and refuses to start with pending or modified migrations
+    @Bean
+    public FlywayMigrationStrategy validateOnly() {
+        return flyway -> flyway.validate();
+    }
+}
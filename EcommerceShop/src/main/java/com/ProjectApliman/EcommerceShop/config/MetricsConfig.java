@@ -0,0 +1,20 @@
+package com.ProjectApliman.EcommerceShop.config;
+
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMetric;
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMetricsInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Applies the endpoint metrics to every @EndpointMetric method
+    @Bean
+    public Advisor endpointMetricsAdvisor(EndpointMetricsInterceptor endpointMetricsInterceptor) {
+        return new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forMethodAnnotation(EndpointMetric.class),
+                endpointMetricsInterceptor);
+    }
+}
@@ -1,129 +1,285 @@
 package com.ProjectApliman.EcommerceShop.controller;
 
+import com.ProjectApliman.EcommerceShop.archive.InvoiceHistory;
+import com.ProjectApliman.EcommerceShop.archive.InvoicePeriods;
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMetric;
+import com.ProjectApliman.EcommerceShop.metrics.StatementCounter;
 import com.ProjectApliman.EcommerceShop.model.*;
 import com.ProjectApliman.EcommerceShop.repository.*;
+import com.ProjectApliman.EcommerceShop.search.SearchIndexes;
+import com.ProjectApliman.EcommerceShop.service.GroupCommitPurchaser;
+import com.ProjectApliman.EcommerceShop.service.IdempotentPurchases;
+import com.ProjectApliman.EcommerceShop.service.InvoiceExporter;
+import com.ProjectApliman.EcommerceShop.service.PurchaseRequest;
+import com.ProjectApliman.EcommerceShop.service.PurchaseService;
+import com.ProjectApliman.EcommerceShop.service.ReadYourWrites;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @CrossOrigin(origins = "*")
 @RestController
 @RequestMapping("/invoice")
 public class InvoiceController {
 
-    private final MeterRegistry meterRegistry;
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final Counter lowAmountInvoices;
+    private final DistributionSummary purchaseStatements;
 
     @Autowired
     public InvoiceController(MeterRegistry meterRegistry) {
-        this.meterRegistry = meterRegistry;
+        this.lowAmountInvoices = meterRegistry.counter("invoice_low_amount_total");
+        // Statements per purchase; should stay flat however many lines the basket has
+        this.purchaseStatements = meterRegistry.summary("invoice_creation_statements");
     }
 
     @Autowired
     private InvoiceRepository invoiceRepository;
 
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private GroupCommitPurchaser groupCommitPurchaser;
+
+    @Autowired
+    private IdempotentPurchases idempotentPurchases;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private InvoiceExporter invoiceExporter;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private SearchIndexes searchIndexes;
+
+    @Autowired
+    private ProjectionRepository projectionRepository;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private ItemRepository itemRepository;
+    private InvoicePeriods invoicePeriods;
 
     @Autowired
-    private InvoiceItemRepository invoiceItemRepository;
+    private InvoiceHistory invoiceHistory;
 
-    @GetMapping("/all")
-    public ResponseEntity<List<Invoice>> getAllInvoices() {
-        var sample = io.micrometer.core.instrument.Timer.start(meterRegistry);
-        try {
-            List<Invoice> invoices = invoiceRepository.findAll();
+    @Autowired
+    private ObjectMapper objectMapper;
 
-            meterRegistry.counter("invoice_get_all_success_total").increment();
-            sample.stop(meterRegistry.timer("invoice_get_all_duration_seconds"));
+    @Value("${shop.stream.fetch-size:500}")
+    private int streamFetchSize;
 
-            return ResponseEntity.ok(invoices);
-        } catch (Exception e) {
-            meterRegistry.counter("invoice_get_all_failed_total").increment();
-            sample.stop(meterRegistry.timer("invoice_get_all_duration_seconds"));
-            throw e;
+    @GetMapping("/all")
+    @EndpointMetric("invoice_get_all")
+    public ResponseEntity<?> getAllInvoices(@RequestParam(required = false) Long after,
+                                            @RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String fields) {
+        Fieldset fieldset = null;
+        if (fields != null) {
+            try {
+                fieldset = parseFields(fields);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        // Listings cover the hot window; older invoices are only in the customer history
+        Date since = invoicePeriods.hotSince();
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(fieldset == null
+                    ? invoiceRepository.findSince(since)
+                    : projectionRepository.invoices(fieldset, null, since));
         }
+        int pageSize = KeysetPages.pageSize(limit);
+        if (fieldset == null) {
+            return KeysetPages.page(invoicesAfter(after == null ? 0 : after, pageSize, since), pageSize, Invoice::getId);
+        }
+        // Ids first as for full invoices, so the page size counts invoices rather than lines
+        List<Long> ids = invoiceRepository.findIdsAfter(after == null ? 0 : after, since, PageRequest.ofSize(pageSize));
+        return KeysetPages.page(projectionRepository.invoices(fieldset, ids, since), pageSize, row -> (Long) row.get("id"));
     }
 
-    @PostMapping("/purchase/{userId}")
-    public ResponseEntity<Invoice> createInvoice(@PathVariable Long userId, @RequestBody List<InvoiceItem> purchasedItems) {
-        var sample = io.micrometer.core.instrument.Timer.start(meterRegistry);
+    // fields=id,totalAmount,items.itemname,...: invoice columns, and line columns under items
+    private static Fieldset parseFields(String fields) {
+        return Fieldset.parse(fields, ProjectionRepository.INVOICE_FIELDS, ProjectionRepository.INVOICE_LINE_FIELDS);
+    }
 
-        try {
-            User user = userRepository.findById(userId)
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            Invoice invoice = new Invoice();
-            invoice.setUser(user);
-            invoice.setTotalAmount(0);
-            invoice = invoiceRepository.save(invoice);
-
-            double totalAmount = 0.0;
-            for (InvoiceItem invoiceItem : purchasedItems) {
-                Item item = itemRepository.findById(invoiceItem.getItem().getItemId())
-                        .orElseThrow(() -> new RuntimeException("Item not found"));
-                invoiceItem.setItem(item);
-                invoiceItem.setInvoice(invoice);
-                invoiceItem.setPrice(item.getItemvalue() * invoiceItem.getQuantity());
-                totalAmount += invoiceItem.getPrice();
-            }
+    @GetMapping(value = "/all", produces = KeysetPages.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllInvoices() {
+        Date since = invoicePeriods.hotSince();
+        return KeysetPages.stream(objectMapper, streamFetchSize,
+                after -> invoicesAfter(after, streamFetchSize, since), Invoice::getId);
+    }
 
-            invoice.setTotalAmount(totalAmount);
-            invoice.setItems(purchasedItems);
+    private List<Invoice> invoicesAfter(long after, int pageSize, Date since) {
+        List<Long> ids = invoiceRepository.findIdsAfter(after, since, PageRequest.ofSize(pageSize));
+        return ids.isEmpty() ? List.of() : invoiceRepository.findWithLinesByIdIn(ids, since);
+    }
 
-            invoice = invoiceRepository.save(invoice);
-            invoiceItemRepository.saveAll(purchasedItems);
+    @GetMapping("/export")
+    @EndpointMetric("invoice_export")
+    public ResponseEntity<StreamingResponseBody> exportInvoices(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "csv") String format) {
+        InvoiceExporter.Format exportFormat;
+        try {
+            exportFormat = InvoiceExporter.Format.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String extension = exportFormat == InvoiceExporter.Format.CSV ? "csv" : "ndjson";
+        // Rows go to the client as the cursor reads them; nothing is collected in memory first
+        return ResponseEntity.ok()
+                .contentType(exportFormat == InvoiceExporter.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType(KeysetPages.NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("invoices-" + from + "-" + to + "." + extension).build().toString())
+                .body(out -> invoiceExporter.export(from, to, exportFormat, out));
+    }
 
-            //INCREMENT the custom metric if total is below 50
-            if (totalAmount < 50) {
-                meterRegistry.counter("invoice_low_amount_total").increment();
+    @PostMapping("/purchase/{userId}")
+    @EndpointMetric("invoice_creation")
+    public ResponseEntity<Invoice> createInvoice(@PathVariable Long userId, @RequestBody List<InvoiceItem> purchasedItems,
+                                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        Invoice invoice;
+        boolean replayed = false;
+        try {
+            if (idempotencyKey == null) {
+                invoice = purchase(userId, purchasedItems, null);
+            } else {
+                if (idempotencyKey.isBlank() || idempotencyKey.length() > IdempotentPurchases.MAX_KEY_LENGTH) {
+                    return ResponseEntity.badRequest().build();
+                }
+                // Retries with the same key get the first request's invoice instead of buying again
+                IdempotentPurchases.Result result = idempotentPurchases.purchase(idempotencyKey, userId, purchasedItems,
+                        key -> purchase(userId, purchasedItems, key));
+                invoice = result.invoice();
+                replayed = result.replayed();
             }
+        } catch (RejectedExecutionException e) {
+            // Purchase queue is full, or the purchase was withdrawn unstarted: the client backs off and retries
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (IdempotentPurchases.KeyReusedException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        } catch (IdempotentPurchases.StillInFlightException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).header(HttpHeaders.RETRY_AFTER, "1").build();
+        } catch (GroupCommitPurchaser.CommitPendingException e) {
+            // Taken into a batch that has not finished: it may yet commit, so this is not a failure.
+            // A retry with the same Idempotency-Key gets the invoice once it has
+            return ResponseEntity.status(HttpStatus.ACCEPTED).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
 
-            meterRegistry.counter("invoice_creation_success_total").increment();
-            sample.stop(meterRegistry.timer("invoice_creation_duration_seconds"));
+        if (replayed) {
+            // Counted when it was first created
+            return ResponseEntity.ok().header(IDEMPOTENT_REPLAYED_HEADER, "true").body(invoice);
+        }
+        //INCREMENT the custom metric if total is below 50
+        if (invoice.getTotalAmount() < 50) {
+            lowAmountInvoices.increment();
+        }
+        return ResponseEntity.ok(invoice);
+    }
+
+    private Invoice purchase(Long userId, List<InvoiceItem> purchasedItems, IdempotencyKey idempotencyKey) {
+        return groupCommitPurchaser.isEnabled()
+                ? groupCommitPurchaser.purchase(new PurchaseRequest(userId, purchasedItems, idempotencyKey))
+                : purchaseDirect(userId, purchasedItems, idempotencyKey);
+    }
 
-            return ResponseEntity.ok(invoice);
-        } catch (Exception e) {
-            meterRegistry.counter("invoice_creation_failed_total").increment();
-            sample.stop(meterRegistry.timer("invoice_creation_duration_seconds"));
-            throw e;
+    // Statements are only counted here; a group commit runs on the committer thread and spans many purchases
+    private Invoice purchaseDirect(Long userId, List<InvoiceItem> purchasedItems, IdempotencyKey idempotencyKey) {
+        statementCounter.begin();
+        try {
+            return purchaseService.purchase(userId, purchasedItems, idempotencyKey);
+        } finally {
+            purchaseStatements.record(statementCounter.end());
         }
     }
 
     @GetMapping("/search/{customerName}")
-    public List<Invoice> getInvoicesByCustomerName(@PathVariable String customerName) {
-        var sample = io.micrometer.core.instrument.Timer.start(meterRegistry);
-
+    @EndpointMetric("invoice_search_by_name")
+    public ResponseEntity<List<?>> getInvoicesByCustomerName(@PathVariable String customerName,
+                                                             @RequestParam(required = false) String fields,
+                                                             @RequestParam(defaultValue = "false") boolean history) {
+        if (history) {
+            // The archive has no projections; history always comes as full invoices
+            if (fields != null) {
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok(invoiceHistory.forCustomers(searchIndexes.userIds(customerName)
+                    .orElseGet(() -> userRepository.findByNameContaining(customerName).stream().map(User::getId).toList())));
+        }
+        Date since = invoicePeriods.hotSince();
+        if (fields == null) {
+            // Matching users come from the search index and become a lookup on invoice.user_id
+            return ResponseEntity.ok(searchIndexes.userIds(customerName)
+                    .map(userIds -> userIds.isEmpty() ? List.<Invoice>of() : invoiceRepository.findByCustomerIdIn(userIds, since))
+                    .orElseGet(() -> invoiceRepository.findByCustomerName(customerName, since)));
+        }
+        Fieldset fieldset;
         try {
-            List<Invoice> result = invoiceRepository.findByCustomerName(customerName);
-            meterRegistry.counter("invoice_search_by_name_success_total").increment();
-            sample.stop(meterRegistry.timer("invoice_search_by_name_duration_seconds"));
-            return result;
-        } catch (Exception e) {
-            meterRegistry.counter("invoice_search_by_name_failed_total").increment();
-            sample.stop(meterRegistry.timer("invoice_search_by_name_duration_seconds"));
-            throw e;
+            fieldset = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(searchIndexes.userIds(customerName)
+                .map(userIds -> projectionRepository.invoicesByCustomerIds(fieldset, userIds, since))
+                .orElseGet(() -> projectionRepository.invoicesByCustomerName(fieldset, customerName, since)));
     }
 
     @GetMapping("/searchbyID/{customerId}")
-    public List<Invoice> getInvoicesByCustomerId(@PathVariable Long customerId) {
-        var sample = io.micrometer.core.instrument.Timer.start(meterRegistry);
-
+    @EndpointMetric("invoice_search_by_id")
+    public ResponseEntity<List<?>> getInvoicesByCustomerId(@PathVariable Long customerId,
+                                                           @RequestParam(required = false) String fields,
+                                                           @RequestParam(defaultValue = "false") boolean history) {
+        if (history) {
+            if (fields != null) {
+                return ResponseEntity.badRequest().build();
+            }
+            return ResponseEntity.ok(readYourWrites.forUser(customerId, () -> invoiceHistory.forCustomers(List.of(customerId))));
+        }
+        Date since = invoicePeriods.hotSince();
+        if (fields == null) {
+            // A buyer sees their new invoice right away, even while the replica lags
+            return ResponseEntity.ok(readYourWrites.forUser(customerId, () -> invoiceRepository.findByCustomerId(customerId, since)));
+        }
+        Fieldset fieldset;
         try {
-            List<Invoice> result = invoiceRepository.findByCustomerId(customerId);
-            meterRegistry.counter("invoice_search_by_id_success_total").increment();
-            sample.stop(meterRegistry.timer("invoice_search_by_id_duration_seconds"));
-            return result;
-        } catch (Exception e) {
-            meterRegistry.counter("invoice_search_by_id_failed_total").increment();
-            sample.stop(meterRegistry.timer("invoice_search_by_id_duration_seconds"));
-            throw e;
+            fieldset = parseFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
+        return ResponseEntity.ok(readYourWrites.forUser(customerId,
+                () -> projectionRepository.invoicesByCustomerIds(fieldset, List.of(customerId), since)));
     }
-}
\ No newline at end of file
+}
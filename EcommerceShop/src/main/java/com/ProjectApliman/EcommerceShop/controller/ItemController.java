@@ -1,138 +1,219 @@
 package com.ProjectApliman.EcommerceShop.controller;
 
+import com.ProjectApliman.EcommerceShop.inventory.StockLedger;
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMetric;
 import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.ItemStock;
+import com.ProjectApliman.EcommerceShop.repository.Fieldset;
 import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
+import com.ProjectApliman.EcommerceShop.repository.ProjectionRepository;
+import com.ProjectApliman.EcommerceShop.search.SearchIndexes;
+import com.ProjectApliman.EcommerceShop.service.CatalogSnapshot;
+import com.ProjectApliman.EcommerceShop.service.ItemCatalog;
+import com.ProjectApliman.EcommerceShop.service.ItemImporter;
+import com.ProjectApliman.EcommerceShop.service.ResourceVersions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 
 @CrossOrigin(origins = "*")
 @RestController
 public class ItemController {
 
-    private final MeterRegistry meterRegistry;
+    @Autowired
+    private ItemRepository itemRepository;
 
     @Autowired
-    public ItemController(MeterRegistry meterRegistry) {
-        this.meterRegistry = meterRegistry;
-    }
+    private ItemCatalog itemCatalog;
 
     @Autowired
-    private ItemRepository itemRepository;
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private ItemImporter itemImporter;
+
+    @Autowired
+    private ProjectionRepository projectionRepository;
+
+    @Autowired
+    private SearchIndexes searchIndexes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${shop.stream.fetch-size:500}")
+    private int streamFetchSize;
 
     @PostMapping("/item")
+    @EndpointMetric("item_create")
     public Item newItem(@RequestBody Item newItem) {
-        var sample = Timer.start(meterRegistry);
-        try {
-            Item saved = itemRepository.save(newItem);
-            meterRegistry.counter("item_create_success_total").increment();
-            sample.stop(meterRegistry.timer("item_create_duration_seconds"));
-            return saved;
-        } catch (Exception e) {
-            meterRegistry.counter("item_create_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_create_duration_seconds"));
-            throw e;
-        }
+        return itemCatalog.save(newItem);
+    }
+
+    // The body is read as a stream, never as a whole; rows with an itemId are upserted
+    @PostMapping(value = "/item/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    @EndpointMetric("item_bulk_import")
+    public ItemImporter.ImportResult importItems(HttpServletRequest request) throws IOException {
+        ItemImporter.Format format = MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(request.getContentType()))
+                ? ItemImporter.Format.JSON
+                : ItemImporter.Format.CSV;
+        return itemImporter.importItems(request.getInputStream(), format);
     }
 
     @GetMapping("/items")
-    public List<Item> getAllItems() {
-        var sample = Timer.start(meterRegistry);
+    @EndpointMetric("item_get_all")
+    public ResponseEntity<?> getAllItems(@RequestParam(required = false) Long after,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String fields,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                         WebRequest request) {
+        // Unchanged since the client's copy: 304 before any cache, database or Jackson work
+        if (request.checkNotModified(resourceVersions.tag(ResourceVersions.Resource.ITEMS))) {
+            return null;
+        }
+        if (fields != null) {
+            return sparseItems(fields, after, limit);
+        }
+        if (after == null && limit == null) {
+            // Pre-serialised JSON when the snapshot is current; otherwise the cached list through the
+            // negotiated converter (while the snapshot rebuilds, or for CBOR and Smile clients)
+            Optional<CatalogSnapshot.Snapshot> snapshot = CatalogSnapshot.prefersJson(accept)
+                    ? catalogSnapshot.current()
+                    : Optional.empty();
+            return snapshot.<ResponseEntity<?>>map(current -> current.toResponse(acceptEncoding))
+                    .orElseGet(() -> ResponseEntity.ok(itemCatalog.findAll()));
+        }
+        int pageSize = KeysetPages.pageSize(limit);
+        List<Item> items = itemRepository.findByItemIdGreaterThanOrderByItemIdAsc(
+                after == null ? 0 : after, PageRequest.ofSize(pageSize));
+        return KeysetPages.page(items, pageSize, Item::getItemId);
+    }
+
+    // Only the requested columns are selected; these reads bypass the catalog cache and snapshot
+    private ResponseEntity<?> sparseItems(String fields, Long after, Integer limit) {
+        Fieldset fieldset;
         try {
-            List<Item> items = itemRepository.findAll();
-            meterRegistry.counter("item_get_all_success_total").increment();
-            sample.stop(meterRegistry.timer("item_get_all_duration_seconds"));
-            return items;
-        } catch (Exception e) {
-            meterRegistry.counter("item_get_all_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_get_all_duration_seconds"));
-            throw e;
+            fieldset = Fieldset.parse(fields, ProjectionRepository.ITEM_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(projectionRepository.items(fieldset, null, null));
         }
+        int pageSize = KeysetPages.pageSize(limit);
+        return KeysetPages.page(projectionRepository.items(fieldset, after == null ? 0 : after, pageSize),
+                pageSize, row -> (Long) row.get("itemId"));
+    }
+
+    @GetMapping(value = "/items", produces = KeysetPages.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllItems() {
+        return KeysetPages.stream(objectMapper, streamFetchSize,
+                after -> itemRepository.findByItemIdGreaterThanOrderByItemIdAsc(after, PageRequest.ofSize(streamFetchSize)),
+                Item::getItemId);
     }
 
     @GetMapping("/item/{id}")
-    public ResponseEntity<Item> getItemById(@PathVariable Long id) {
-        var sample = Timer.start(meterRegistry);
-        try {
-            Optional<Item> item = itemRepository.findById(id);
-            meterRegistry.counter("item_get_by_id_success_total").increment();
-            sample.stop(meterRegistry.timer("item_get_by_id_duration_seconds"));
-            return item.map(ResponseEntity::ok)
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-        } catch (Exception e) {
-            meterRegistry.counter("item_get_by_id_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_get_by_id_duration_seconds"));
-            throw e;
+    @EndpointMetric("item_get_by_id")
+    public ResponseEntity<Item> getItemById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(resourceVersions.tag(ResourceVersions.Resource.ITEMS, id))) {
+            return null;
         }
+        return itemCatalog.findById(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PutMapping("/item/{id}")
+    @EndpointMetric("item_update")
     public ResponseEntity<Item> updateItem(@PathVariable Long id, @RequestBody Item updatedItem) {
-        var sample = Timer.start(meterRegistry);
-        try {
-            ResponseEntity<Item> response = itemRepository.findById(id)
-                    .map(existingItem -> {
-                        existingItem.setItemname(updatedItem.getItemname());
-                        existingItem.setItemdescription(updatedItem.getItemdescription());
-                        existingItem.setItemvalue(updatedItem.getItemvalue());
-                        existingItem.setItemimage(updatedItem.getItemimage());
-                        return ResponseEntity.ok(itemRepository.save(existingItem));
-                    })
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-
-            meterRegistry.counter("item_update_success_total").increment();
-            sample.stop(meterRegistry.timer("item_update_duration_seconds"));
-            return response;
-        } catch (Exception e) {
-            meterRegistry.counter("item_update_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_update_duration_seconds"));
-            throw e;
-        }
+        return itemCatalog.update(id, existingItem -> {
+                    existingItem.setItemname(updatedItem.getItemname());
+                    existingItem.setItemdescription(updatedItem.getItemdescription());
+                    existingItem.setItemvalue(updatedItem.getItemvalue());
+                    existingItem.setItemimage(updatedItem.getItemimage());
+                })
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/item/{id}")
+    @EndpointMetric("item_delete")
     public ResponseEntity<Void> deleteItem(@PathVariable Long id) {
-        var sample = Timer.start(meterRegistry);
         try {
-            if (!itemRepository.existsById(id)) {
-                meterRegistry.counter("item_delete_failed_total").increment();
-                sample.stop(meterRegistry.timer("item_delete_duration_seconds"));
+            if (!itemCatalog.delete(id)) {
                 return ResponseEntity.notFound().build();
             }
-            itemRepository.deleteById(id);
-            meterRegistry.counter("item_delete_success_total").increment();
-            sample.stop(meterRegistry.timer("item_delete_duration_seconds"));
+            stockLedger.remove(id);
             return ResponseEntity.noContent().build();
         } catch (DataIntegrityViolationException e) {
-            meterRegistry.counter("item_delete_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_delete_duration_seconds"));
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
-            meterRegistry.counter("item_delete_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_delete_duration_seconds"));
             return ResponseEntity.internalServerError().build();
         }
     }
 
     @GetMapping("/item/search/{name}")
-    public List<Item> searchItems(@PathVariable String name) {
-        var sample = Timer.start(meterRegistry);
+    @EndpointMetric("item_search")
+    public ResponseEntity<List<?>> searchItems(@PathVariable String name, @RequestParam(required = false) String fields) {
+        if (fields == null) {
+            return ResponseEntity.ok(itemCatalog.search(name));
+        }
+        Fieldset fieldset;
         try {
-            List<Item> result = itemRepository.findByItemnameContaining(name);
-            meterRegistry.counter("item_search_success_total").increment();
-            sample.stop(meterRegistry.timer("item_search_duration_seconds"));
-            return result;
-        } catch (Exception e) {
-            meterRegistry.counter("item_search_failed_total").increment();
-            sample.stop(meterRegistry.timer("item_search_duration_seconds"));
-            throw e;
+            fieldset = Fieldset.parse(fields, ProjectionRepository.ITEM_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(searchIndexes.itemIds(name)
+                .map(ids -> projectionRepository.itemsById(fieldset, ids))
+                .orElseGet(() -> projectionRepository.itemsByName(fieldset, name)));
+    }
+
+    @GetMapping("/item/{id}/stock")
+    @EndpointMetric("item_get_stock")
+    public ResponseEntity<ItemStock> getItemStock(@PathVariable Long id) {
+        // 404 also for items that exist but are not stock-tracked
+        OptionalLong available = stockLedger.available(id);
+        if (available.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ItemStock stock = new ItemStock();
+        stock.setItemId(id);
+        stock.setAvailable(available.getAsLong());
+        return ResponseEntity.ok(stock);
+    }
+
+    @PutMapping("/item/{id}/stock")
+    @EndpointMetric("item_update_stock")
+    public ResponseEntity<ItemStock> updateItemStock(@PathVariable Long id, @RequestBody ItemStock updatedStock) {
+        if (updatedStock.getAvailable() < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!itemRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok(stockLedger.setAvailable(id, updatedStock.getAvailable()));
     }
 }
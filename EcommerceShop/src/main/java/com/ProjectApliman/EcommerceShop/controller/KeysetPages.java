@@ -0,0 +1,65 @@
+package com.ProjectApliman.EcommerceShop.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Helpers for keyset (id cursor) pagination and NDJSON streaming of whole tables.
+ */
+final class KeysetPages {
+
+    static final String NDJSON = "application/x-ndjson";
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private KeysetPages() {
+    }
+
+    static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    // A full page means there may be more rows; the last id is the cursor for the next one
+    static <T> ResponseEntity<List<T>> page(List<T> rows, int pageSize, ToLongFunction<T> idOf) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (rows.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, Long.toString(idOf.applyAsLong(rows.get(rows.size() - 1))));
+        }
+        return response.body(rows);
+    }
+
+    // Walks the table chunk by chunk and writes each row as its own JSON line, so memory stays flat.
+    // Each chunk is read in its own persistence context (open-in-view is off), so rows already
+    // written are garbage once the next chunk is loaded
+    static <T> ResponseEntity<StreamingResponseBody> stream(ObjectMapper objectMapper, int chunkSize,
+                                                             LongFunction<List<T>> chunkAfter, ToLongFunction<T> idOf) {
+        ObjectWriter writer = objectMapper.writer();
+        StreamingResponseBody body = out -> {
+            long after = 0;
+            List<T> chunk;
+            do {
+                chunk = chunkAfter.apply(after);
+                for (T row : chunk) {
+                    out.write(writer.writeValueAsBytes(row));
+                    out.write('\n');
+                }
+                if (!chunk.isEmpty()) {
+                    after = idOf.applyAsLong(chunk.get(chunk.size() - 1));
+                }
+                out.flush();
+            } while (chunk.size() == chunkSize);
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ProjectApliman.EcommerceShop.controller;
+
+import com.ProjectApliman.EcommerceShop.analytics.SalesRollups;
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMetric;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@CrossOrigin(origins = "*")
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    @Autowired
+    private SalesRollups salesRollups;
+
+    @GetMapping("/summary")
+    @EndpointMetric("stats_summary")
+    public SalesRollups.SalesSummary getSummary() {
+        return salesRollups.summary();
+    }
+
+    @GetMapping("/user/{userId}")
+    @EndpointMetric("stats_user")
+    public SalesRollups.UserSales getUserSales(@PathVariable long userId) {
+        return salesRollups.user(userId);
+    }
+
+    @GetMapping("/item/{itemId}")
+    @EndpointMetric("stats_item")
+    public SalesRollups.ItemSales getItemSales(@PathVariable long itemId) {
+        return salesRollups.item(itemId);
+    }
+
+    @GetMapping("/day/{date}")
+    @EndpointMetric("stats_day")
+    public SalesRollups.DailySales getDailySales(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return salesRollups.day(date);
+    }
+}
@@ -1,114 +1,157 @@
 package com.ProjectApliman.EcommerceShop.controller;
 
+import com.ProjectApliman.EcommerceShop.metrics.EndpointMetric;
 import com.ProjectApliman.EcommerceShop.model.User;
+import com.ProjectApliman.EcommerceShop.repository.Fieldset;
+import com.ProjectApliman.EcommerceShop.repository.ProjectionRepository;
 import com.ProjectApliman.EcommerceShop.repository.UserRepository;
-import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Timer;
+import com.ProjectApliman.EcommerceShop.search.SearchIndexes;
+import com.ProjectApliman.EcommerceShop.service.ReadYourWrites;
+import com.ProjectApliman.EcommerceShop.service.ResourceVersions;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @CrossOrigin(origins = "*")
 @RestController
 public class UserController {
 
-    private final MeterRegistry meterRegistry;
+    @Autowired
+    private UserRepository userRepository;
 
     @Autowired
-    public UserController(MeterRegistry meterRegistry) {
-        this.meterRegistry = meterRegistry;
-    }
+    private SearchIndexes searchIndexes;
 
     @Autowired
-    private UserRepository userRepository;
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private ProjectionRepository projectionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Read-write: routes a read-modify-write to the primary as a whole
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${shop.stream.fetch-size:500}")
+    private int streamFetchSize;
 
     @PostMapping("/user")
+    @EndpointMetric("user_create")
     public User newUser(@RequestBody User newUser) throws InterruptedException {
-        var sample = Timer.start(meterRegistry);
-        try {
-            // Simulate a delay of 5 seconds
-            Thread.sleep(5000);
-            User saved = userRepository.save(newUser);
-            meterRegistry.counter("user_create_success_total").increment();
-            sample.stop(meterRegistry.timer("user_create_duration_seconds"));
-            return saved;
-        } catch (Exception e) {
-            meterRegistry.counter("user_create_failed_total").increment();
-            sample.stop(meterRegistry.timer("user_create_duration_seconds"));
-            throw e;
-        }
+        // Simulate a delay of 5 seconds
+        Thread.sleep(5000);
+        User saved = userRepository.save(newUser);
+        searchIndexes.indexUser(saved);
+        resourceVersions.bump(ResourceVersions.Resource.USERS, saved.getId());
+        readYourWrites.wrote(saved.getId());
+        return saved;
     }
 
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        var sample = Timer.start(meterRegistry);
+    @EndpointMetric("user_get_all")
+    public ResponseEntity<?> getAllUsers(@RequestParam(required = false) Long after,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) String fields,
+                                         WebRequest request) {
+        // Unchanged since the client's copy: 304 before any database or Jackson work
+        if (request.checkNotModified(resourceVersions.tag(ResourceVersions.Resource.USERS))) {
+            return null;
+        }
+        if (fields != null) {
+            return sparseUsers(fields, after, limit);
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(userRepository.findAll());
+        }
+        int pageSize = KeysetPages.pageSize(limit);
+        List<User> users = userRepository.findByIdGreaterThanOrderByIdAsc(
+                after == null ? 0 : after, PageRequest.ofSize(pageSize));
+        return KeysetPages.page(users, pageSize, User::getId);
+    }
+
+    // Only the requested columns are selected
+    private ResponseEntity<List<Map<String, Object>>> sparseUsers(String fields, Long after, Integer limit) {
+        Fieldset fieldset;
         try {
-            List<User> users = userRepository.findAll();
-            meterRegistry.counter("user_get_all_success_total").increment();
-            sample.stop(meterRegistry.timer("user_get_all_duration_seconds"));
-            return ResponseEntity.ok(users);
-        } catch (Exception e) {
-            meterRegistry.counter("user_get_all_failed_total").increment();
-            sample.stop(meterRegistry.timer("user_get_all_duration_seconds"));
-            throw e;
+            fieldset = Fieldset.parse(fields, ProjectionRepository.USER_FIELDS);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(projectionRepository.users(fieldset, null, null));
         }
+        int pageSize = KeysetPages.pageSize(limit);
+        return KeysetPages.page(projectionRepository.users(fieldset, after == null ? 0 : after, pageSize),
+                pageSize, row -> (Long) row.get("id"));
+    }
+
+    @GetMapping(value = "/users", produces = KeysetPages.NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return KeysetPages.stream(objectMapper, streamFetchSize,
+                after -> userRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.ofSize(streamFetchSize)),
+                User::getId);
     }
 
     @GetMapping("/user/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
-        var sample = Timer.start(meterRegistry);
-        try {
-            Optional<User> user = userRepository.findById(id);
-            meterRegistry.counter("user_get_by_id_success_total").increment();
-            sample.stop(meterRegistry.timer("user_get_by_id_duration_seconds"));
-            return user.map(ResponseEntity::ok)
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-        } catch (Exception e) {
-            meterRegistry.counter("user_get_by_id_failed_total").increment();
-            sample.stop(meterRegistry.timer("user_get_by_id_duration_seconds"));
-            throw e;
+    @EndpointMetric("user_get_by_id")
+    public ResponseEntity<User> getUserById(@PathVariable Long id, WebRequest request) {
+        if (request.checkNotModified(resourceVersions.tag(ResourceVersions.Resource.USERS, id))) {
+            return null;
         }
+        return readYourWrites.forUser(id, () -> userRepository.findById(id))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PutMapping("/user/{id}")
+    @EndpointMetric("user_update")
     public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User updatedUser) {
-        var sample = Timer.start(meterRegistry);
-        try {
-            ResponseEntity<User> response = userRepository.findById(id)
-                    .map(existingUser -> {
-                        existingUser.setUsername(updatedUser.getUsername());
-                        existingUser.setName(updatedUser.getName());
-                        existingUser.setEmail(updatedUser.getEmail());
-                        userRepository.save(existingUser);
-                        return ResponseEntity.ok(existingUser);
-                    })
-                    .orElseGet(() -> ResponseEntity.notFound().build());
-
-            meterRegistry.counter("user_update_success_total").increment();
-            sample.stop(meterRegistry.timer("user_update_duration_seconds"));
-            return response;
-        } catch (Exception e) {
-            meterRegistry.counter("user_update_failed_total").increment();
-            sample.stop(meterRegistry.timer("user_update_duration_seconds"));
-            throw e;
-        }
+        Optional<User> saved = transactionTemplate.execute(status -> userRepository.findById(id)
+                .map(existingUser -> {
+                    existingUser.setUsername(updatedUser.getUsername());
+                    existingUser.setName(updatedUser.getName());
+                    existingUser.setEmail(updatedUser.getEmail());
+                    return userRepository.save(existingUser);
+                }));
+        return saved
+                .map(existingUser -> {
+                    searchIndexes.indexUser(existingUser);
+                    resourceVersions.bump(ResourceVersions.Resource.USERS, id);
+                    readYourWrites.wrote(id);
+                    return ResponseEntity.ok(existingUser);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @GetMapping("/user/search/{name}")
+    @EndpointMetric("user_search")
     public List<User> searchUsers(@PathVariable String name) {
-        var sample = Timer.start(meterRegistry);
-        try {
-            List<User> result = userRepository.findByNameContaining(name);
-            meterRegistry.counter("user_search_success_total").increment();
-            sample.stop(meterRegistry.timer("user_search_duration_seconds"));
-            return result;
-        } catch (Exception e) {
-            meterRegistry.counter("user_search_failed_total").increment();
-            sample.stop(meterRegistry.timer("user_search_duration_seconds"));
-            throw e;
-        }
+        return searchIndexes.userIds(name)
+                .map(this::usersById)
+                .orElseGet(() -> userRepository.findByNameContaining(name));
+    }
+
+    private List<User> usersById(List<Long> ids) {
+        List<User> users = new ArrayList<>(userRepository.findAllById(ids));
+        users.sort(Comparator.comparingLong(User::getId));
+        return users;
     }
 }
@@ -0,0 +1,266 @@
+package com.ProjectApliman.EcommerceShop.inventory;
+
+import com.ProjectApliman.EcommerceShop.model.ItemStock;
+import com.ProjectApliman.EcommerceShop.repository.ItemStockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock counts for stock-tracked items. Baskets are admitted or refused by {@link StripedStock}s
+ * held in memory, so buyers of a hot item contend on neither a lock nor a row. What a purchase
+ * transaction sold is appended to {@code item_stock_journal} as it commits: plain inserts, so a
+ * sale is durable exactly when its invoice is and one basket can never fail a group-commit batch
+ * over stock. Every {@code shop.inventory.flush-interval} the journal is folded into
+ * {@code item_stock} with one decrement per item, in a short transaction of its own.
+ * On startup the counts are the rows minus the journal entries not folded in yet.
+ * Items without an {@code item_stock} row are sold without limit.
+ * <p>
+ * The counts admit only what this instance has not sold; an item sold by several instances at
+ * once needs its stock split between them.
+ */
+@Component
+public class StockLedger implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(StockLedger.class);
+
+    // Journal rows folded into item_stock per flush transaction
+    private static final int FLUSH_CHUNK = 10_000;
+
+    // Units taken from one counter; given back to that counter, never to one that replaced it
+    private record Reservation(Long itemId, StripedStock counter, long quantity) {
+    }
+
+    private record JournalEntry(long id, long itemId, long quantity) {
+    }
+
+    private final ItemStockRepository itemStockRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int stripes;
+    private final Counter flushedUnits;
+
+    private final Map<Long, StripedStock> stock = new ConcurrentHashMap<>();
+
+    public StockLedger(ItemStockRepository itemStockRepository, JdbcTemplate jdbcTemplate,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       @Value("${shop.inventory.stripes:16}") int stripes) {
+        this.itemStockRepository = itemStockRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripes = stripes;
+        this.flushedUnits = meterRegistry.counter("stock_journal_flushed_units_total");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // A read-write transaction keeps this on the primary; counts from a lagging replica could oversell
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Long> unflushed = new HashMap<>();
+            jdbcTemplate.query("SELECT item_id, SUM(quantity) FROM item_stock_journal GROUP BY item_id", row -> {
+                unflushed.put(row.getLong(1), row.getLong(2));
+            });
+            for (ItemStock row : itemStockRepository.findAll()) {
+                long available = row.getAvailable() - unflushed.getOrDefault(row.getItemId(), 0L);
+                stock.put(row.getItemId(), new StripedStock(stripes, Math.max(available, 0)));
+            }
+        });
+        log.info("Loaded stock for {} items", stock.size());
+    }
+
+    /** Units left, or empty when the item is not stock-tracked. */
+    public OptionalLong available(Long itemId) {
+        StripedStock counter = stock.get(itemId);
+        return counter == null ? OptionalLong.empty() : OptionalLong.of(counter.available());
+    }
+
+    /**
+     * Replaces the count; sales journaled before it are dropped with the old count. The in-memory
+     * counter is swapped for a new one once the row is committed, so units of a reservation that
+     * rolls back afterwards go back to the old counter and are not added on top of the new count.
+     */
+    @Transactional
+    public ItemStock setAvailable(Long itemId, long available) {
+        ItemStock row = new ItemStock();
+        row.setItemId(itemId);
+        row.setAvailable(available);
+        itemStockRepository.save(row);
+        jdbcTemplate.update("DELETE FROM item_stock_journal WHERE item_id = ?", itemId);
+        afterCommit(() -> stock.put(itemId, new StripedStock(stripes, available)));
+        return row;
+    }
+
+    /** Stops tracking the item once the transaction commits; it is then sold without limit. */
+    @Transactional
+    public void remove(Long itemId) {
+        if (itemStockRepository.existsById(itemId)) {
+            itemStockRepository.deleteById(itemId);
+        }
+        jdbcTemplate.update("DELETE FROM item_stock_journal WHERE item_id = ?", itemId);
+        afterCommit(() -> stock.remove(itemId));
+    }
+
+    /**
+     * Reserves the quantities of every tracked item in the basket, all or nothing, and journals
+     * them with the surrounding transaction; without one they are journaled right away. The units
+     * are given back if the transaction does not commit.
+     *
+     * @throws ResponseStatusException 409 when an item does not have enough stock left
+     */
+    public void reserve(Map<Long, Long> quantities) {
+        List<Reservation> reserved = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : quantities.entrySet()) {
+            StripedStock counter = stock.get(entry.getKey());
+            if (counter == null) {
+                continue;
+            }
+            if (entry.getValue() <= 0) {
+                release(reserved);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be positive");
+            }
+            if (!counter.tryTake(entry.getValue())) {
+                release(reserved);
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Out of stock: item " + entry.getKey());
+            }
+            reserved.add(new Reservation(entry.getKey(), counter, entry.getValue()));
+        }
+        if (reserved.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingWrites().addAll(reserved);
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> journal(reserved));
+        } catch (RuntimeException e) {
+            release(reserved);
+            throw e;
+        }
+    }
+
+    /**
+     * Folds the journal into {@code item_stock}: per chunk of entries one decrement per item, and
+     * the entries deleted, in one transaction.
+     *
+     * @return the number of units folded in
+     */
+    @Scheduled(fixedDelayString = "${shop.inventory.flush-interval:1s}")
+    public synchronized long flush() {
+        long units = 0;
+        long chunk;
+        do {
+            chunk = Objects.requireNonNullElse(transactionTemplate.execute(this::flushChunk), 0L);
+            units += chunk;
+        } while (chunk > 0);
+        flushedUnits.increment(units);
+        return units;
+    }
+
+    // Units folded in; 0 when the journal is empty or another instance is flushing it
+    private long flushChunk(TransactionStatus status) {
+        List<JournalEntry> entries = jdbcTemplate.query(
+                "SELECT id, item_id, quantity FROM item_stock_journal ORDER BY id LIMIT ?",
+                (row, n) -> new JournalEntry(row.getLong(1), row.getLong(2), row.getLong(3)), FLUSH_CHUNK);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        // Entries are deleted by id, never by range: a purchase still committing may hold a lower
+        // id than the highest read here. Deleting first also stops two instances flushing the same
+        // entries twice; the one that deletes fewer rows than it read rolls back and leaves them.
+        Object[] ids = entries.stream().map(JournalEntry::id).toArray();
+        String in = String.join(", ", Collections.nCopies(ids.length, "?"));
+        if (jdbcTemplate.update("DELETE FROM item_stock_journal WHERE id IN (" + in + ")", ids) != ids.length) {
+            status.setRollbackOnly();
+            log.info("Stock journal is being flushed by another instance");
+            return 0;
+        }
+        Map<Long, Long> totals = new TreeMap<>();
+        long units = 0;
+        for (JournalEntry entry : entries) {
+            totals.merge(entry.itemId(), entry.quantity(), Long::sum);
+            units += entry.quantity();
+        }
+        List<Object[]> decrements = new ArrayList<>(totals.size());
+        totals.forEach((itemId, quantity) -> decrements.add(new Object[]{quantity, itemId}));
+        jdbcTemplate.batchUpdate("UPDATE item_stock SET available = available - ? WHERE item_id = ?", decrements);
+        log.debug("Folded {} journaled units of {} items into item_stock", units, totals.size());
+        return units;
+    }
+
+    // Reservations of the current transaction, journaled by one synchronization registered with the first
+    @SuppressWarnings("unchecked")
+    private List<Reservation> pendingWrites() {
+        List<Reservation> pending = (List<Reservation>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            return pending;
+        }
+        List<Reservation> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                journal(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(StockLedger.this);
+                if (status != STATUS_COMMITTED) {
+                    release(created);
+                }
+            }
+        });
+        return created;
+    }
+
+    // One journal row per item for the whole transaction
+    private void journal(List<Reservation> reserved) {
+        Map<Long, Long> totals = new TreeMap<>();
+        for (Reservation reservation : reserved) {
+            totals.merge(reservation.itemId(), reservation.quantity(), Long::sum);
+        }
+        List<Object[]> rows = new ArrayList<>(totals.size());
+        totals.forEach((itemId, quantity) -> rows.add(new Object[]{itemId, quantity}));
+        jdbcTemplate.batchUpdate("INSERT INTO item_stock_journal (item_id, quantity) VALUES (?, ?)", rows);
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static void release(List<Reservation> reserved) {
+        for (Reservation reservation : reserved) {
+            reservation.counter().put(reservation.quantity());
+        }
+    }
+}
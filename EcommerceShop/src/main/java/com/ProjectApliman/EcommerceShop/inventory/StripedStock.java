@@ -0,0 +1,103 @@
+package com.ProjectApliman.EcommerceShop.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock of one item split across independent stripes, so concurrent buyers of the same item
+ * mostly CAS different cache lines instead of queueing on one counter or one row lock.
+ * A stripe is only ever decremented by a CAS that keeps it non-negative, so the sum can
+ * never go below zero: stock is never oversold. A reservation may be refused while units
+ * sit in a stripe that another buyer is about to give back; that errs on the side of not selling.
+ */
+public final class StripedStock {
+
+    // Longs between two stripes: 128 bytes, so stripes share neither a cache line nor its prefetched pair
+    private static final int PAD = 16;
+
+    private final int stripes;
+    private final AtomicLongArray cells;
+
+    public StripedStock(int stripes, long available) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PAD);
+        set(available);
+    }
+
+    public long available() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    /**
+     * Replaces the count, spreading it evenly over the stripes. Reservations racing with it
+     * count against the old value.
+     */
+    public void set(long available) {
+        if (available < 0) {
+            throw new IllegalArgumentException("available must not be negative");
+        }
+        long share = available / stripes;
+        long rest = available % stripes;
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PAD, share + (i < rest ? 1 : 0));
+        }
+    }
+
+    /** Takes {@code quantity} units if that many are available; all or nothing. */
+    public boolean tryTake(long quantity) {
+        int home = ThreadLocalRandom.current().nextInt(stripes);
+        // Common case: one stripe covers the whole quantity
+        for (int i = 0; i < stripes; i++) {
+            if (tryTakeFrom((home + i) % stripes, quantity)) {
+                return true;
+            }
+        }
+        // Stripes drained unevenly: gather the quantity from several, giving it back if there is not enough
+        long taken = 0;
+        for (int i = 0; i < stripes && taken < quantity; i++) {
+            taken += takeUpTo((home + i) % stripes, quantity - taken);
+        }
+        if (taken == quantity) {
+            return true;
+        }
+        put(taken);
+        return false;
+    }
+
+    /** Returns units taken by a reservation that did not go through. */
+    public void put(long quantity) {
+        if (quantity > 0) {
+            cells.getAndAdd(ThreadLocalRandom.current().nextInt(stripes) * PAD, quantity);
+        }
+    }
+
+    private boolean tryTakeFrom(int stripe, long quantity) {
+        int index = stripe * PAD;
+        long current;
+        do {
+            current = cells.get(index);
+            if (current < quantity) {
+                return false;
+            }
+        } while (!cells.compareAndSet(index, current, current - quantity));
+        return true;
+    }
+
+    private long takeUpTo(int stripe, long quantity) {
+        int index = stripe * PAD;
+        long current;
+        long take;
+        do {
+            current = cells.get(index);
+            take = Math.min(current, quantity);
+            if (take == 0) {
+                return 0;
+            }
+        } while (!cells.compareAndSet(index, current, current - take));
+        return take;
+    }
+}
@@ -0,0 +1,38 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters of one {@link EndpointMetric}, registered once so recording a call is only
+ * an increment and a timer update.
+ */
+public final class EndpointMeters {
+
+    private final Counter success;
+    private final Counter failed;
+    private final Timer successDuration;
+    private final Timer failedDuration;
+
+    public EndpointMeters(MeterRegistry meterRegistry, String name, String endpoint) {
+        this.success = Counter.builder(name + "_success_total").tag("endpoint", endpoint).register(meterRegistry);
+        this.failed = Counter.builder(name + "_failed_total").tag("endpoint", endpoint).register(meterRegistry);
+        this.successDuration = Timer.builder(name + "_duration_seconds")
+                .tags("endpoint", endpoint, "outcome", "success").register(meterRegistry);
+        this.failedDuration = Timer.builder(name + "_duration_seconds")
+                .tags("endpoint", endpoint, "outcome", "failed").register(meterRegistry);
+    }
+
+    public void record(boolean succeeded, long durationNanos) {
+        if (succeeded) {
+            success.increment();
+            successDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+        } else {
+            failed.increment();
+            failedDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Records a controller method under the given metric name: {@code <name>_success_total},
+ * {@code <name>_failed_total} and {@code <name>_duration_seconds}, tagged with the endpoint.
+ * A call fails when it throws or returns a 5xx status; a 4xx, such as a 404 for an unknown id,
+ * counts as a success.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface EndpointMetric {
+
+    String value();
+}
@@ -0,0 +1,81 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every {@link EndpointMetric} method. The meters of all annotated controller methods
+ * are bound at startup, a call only looks its method up and records into them.
+ */
+@Component
+public class EndpointMetricsInterceptor implements MethodInterceptor, SmartInitializingSingleton {
+
+    // Resolved lazily: this interceptor is created with the AOP infrastructure, before the registry is configured
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final ApplicationContext applicationContext;
+    private final Map<Method, EndpointMeters> meters = new ConcurrentHashMap<>();
+
+    public EndpointMetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistry, ApplicationContext applicationContext) {
+        this.meterRegistry = meterRegistry;
+        this.applicationContext = applicationContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Object controller : applicationContext.getBeansWithAnnotation(RestController.class).values()) {
+            ReflectionUtils.doWithMethods(AopUtils.getTargetClass(controller), this::metersFor,
+                    method -> method.isAnnotationPresent(EndpointMetric.class));
+        }
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        EndpointMeters endpoint = metersFor(invocation.getMethod());
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            Object result = invocation.proceed();
+            succeeded = !(result instanceof ResponseEntity<?> response && response.getStatusCode().is5xxServerError());
+            return result;
+        } finally {
+            endpoint.record(succeeded, System.nanoTime() - start);
+        }
+    }
+
+    private EndpointMeters metersFor(Method method) {
+        EndpointMeters bound = meters.get(method);
+        if (bound != null) {
+            return bound;
+        }
+        return meters.computeIfAbsent(method, key -> new EndpointMeters(meterRegistry.getObject(),
+                key.getAnnotation(EndpointMetric.class).value(), endpoint(key)));
+    }
+
+    // "GET /invoice/all" style tag built from the class and method request mappings
+    private static String endpoint(Method method) {
+        RequestMapping mapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+        if (mapping == null) {
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        }
+        RequestMapping classMapping = AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(), RequestMapping.class);
+        String prefix = classMapping != null && classMapping.path().length > 0 ? classMapping.path()[0] : "";
+        String path = mapping.path().length > 0 ? mapping.path()[0] : "";
+        String verb = mapping.method().length > 0 ? mapping.method()[0].name() : "ANY";
+        return verb + " " + prefix + path;
+    }
+}
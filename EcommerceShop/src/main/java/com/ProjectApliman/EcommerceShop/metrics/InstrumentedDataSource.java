@@ -0,0 +1,194 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Wraps a connection pool so that, inside an HTTP request, connections, statements and result
+ * sets report into the request's {@link PersistenceStats}: time to get the connection, each
+ * execution and its duration, and every row read. Outside a request connections are handed out
+ * unwrapped, so startup, migrations and background jobs pay nothing.
+ * Execution time is the execute call itself; with a streaming cursor, rows fetched later by
+ * {@code next()} are counted but not timed.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private final SlowStatementLog slowStatements;
+
+    public InstrumentedDataSource(DataSource targetDataSource, SlowStatementLog slowStatements) {
+        super(targetDataSource);
+        this.slowStatements = slowStatements;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        PersistenceStats stats = PersistenceStats.current();
+        if (stats == null) {
+            return super.getConnection();
+        }
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        stats.connectionWaitNanos += System.nanoTime() - start;
+        return proxy(Connection.class, new ConnectionHandler(connection, stats));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        PersistenceStats stats = PersistenceStats.current();
+        if (stats == null) {
+            return super.getConnection(username, password);
+        }
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        stats.connectionWaitNanos += System.nanoTime() - start;
+        return proxy(Connection.class, new ConnectionHandler(connection, stats));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object call(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        // A proxy is only equal to itself, as the pooled connection it wraps would be
+        if (method.getName().equals("equals") && method.getParameterCount() == 1) {
+            return proxy == args[0];
+        }
+        if (method.getName().equals("hashCode") && method.getParameterCount() == 0) {
+            return System.identityHashCode(proxy);
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final PersistenceStats stats;
+
+        ConnectionHandler(Connection target, PersistenceStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = call(proxy, target, method, args);
+            return switch (method.getName()) {
+                case "prepareStatement", "prepareCall" -> proxy(method.getReturnType().asSubclass(Statement.class),
+                        new StatementHandler((Statement) result, (String) args[0], stats));
+                case "createStatement" -> proxy(Statement.class, new StatementHandler((Statement) result, null, stats));
+                default -> result;
+            };
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+
+        private static final Object NULL = new Object();
+
+        private final Statement target;
+        private final String sql;
+        private final PersistenceStats stats;
+        // Values bound for the next execution; only turned into shapes when it is slow
+        private Object[] parameters = new Object[8];
+        private int parameterCount;
+
+        StatementHandler(Statement target, String sql, PersistenceStats stats) {
+            this.target = target;
+            this.sql = sql;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                Object result;
+                try {
+                    result = call(proxy, target, method, args);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    stats.statements++;
+                    stats.jdbcNanos += elapsed;
+                    if (slowStatements.isSlow(elapsed)) {
+                        String executed = args != null && args.length > 0 && args[0] instanceof String text ? text : sql;
+                        slowStatements.record(stats, executed, parameterShapes(), elapsed);
+                    }
+                }
+                return result instanceof ResultSet resultSet ? proxy(ResultSet.class, new ResultSetHandler(resultSet, stats)) : result;
+            }
+            Object result = call(proxy, target, method, args);
+            if (name.equals("getResultSet") && result instanceof ResultSet resultSet) {
+                return proxy(ResultSet.class, new ResultSetHandler(resultSet, stats));
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") ? NULL : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameterCount = 0;
+            }
+            return result;
+        }
+
+        private void bind(int index, Object value) {
+            if (index > parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index, parameters.length * 2));
+            }
+            parameters[index - 1] = value;
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        // Types and sizes, never the values themselves
+        private String parameterShapes() {
+            StringBuilder shapes = new StringBuilder();
+            for (int i = 0; i < parameterCount; i++) {
+                Object value = parameters[i];
+                shapes.append(i == 0 ? "" : ", ");
+                if (value == null || value == NULL) {
+                    shapes.append("null");
+                } else if (value instanceof String text) {
+                    shapes.append("String(").append(text.length()).append(')');
+                } else if (value instanceof byte[] bytes) {
+                    shapes.append("byte[").append(bytes.length).append(']');
+                } else {
+                    shapes.append(value.getClass().getSimpleName());
+                }
+            }
+            return shapes.toString();
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final PersistenceStats stats;
+
+        ResultSetHandler(ResultSet target, PersistenceStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = call(proxy, target, method, args);
+            if (result == Boolean.TRUE && method.getName().equals("next")) {
+                stats.rows++;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens a {@link PersistenceStats} for every request and records it per endpoint when the
+ * request completes: persistence_statements, persistence_rows_fetched, persistence_jdbc_seconds
+ * and persistence_connection_wait_seconds, tagged "GET /invoice/search/{customerName}" style
+ * with the matched mapping. Requests no controller mapped are not recorded.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class PersistenceMetricsFilter extends OncePerRequestFilter {
+
+    private record Meters(DistributionSummary statements, DistributionSummary rows, Timer jdbc, Timer connectionWait) {
+
+        void record(PersistenceStats stats) {
+            statements.record(stats.statements);
+            rows.record(stats.rows);
+            jdbc.record(stats.jdbcNanos, TimeUnit.NANOSECONDS);
+            connectionWait.record(stats.connectionWaitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    public PersistenceMetricsFilter(MeterRegistry meterRegistry,
+                                    @Value("${shop.persistence.instrumentation.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        PersistenceStats stats = PersistenceStats.begin(request);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PersistenceStats.end();
+            if (request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE) != null) {
+                meters.computeIfAbsent(endpoint(request), this::register).record(stats);
+            }
+        }
+    }
+
+    private Meters register(String endpoint) {
+        return new Meters(
+                DistributionSummary.builder("persistence_statements").tag("endpoint", endpoint).register(meterRegistry),
+                DistributionSummary.builder("persistence_rows_fetched").tag("endpoint", endpoint).register(meterRegistry),
+                Timer.builder("persistence_jdbc_seconds").tag("endpoint", endpoint).register(meterRegistry),
+                Timer.builder("persistence_connection_wait_seconds").tag("endpoint", endpoint).register(meterRegistry));
+    }
+
+    static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "UNMAPPED");
+    }
+}
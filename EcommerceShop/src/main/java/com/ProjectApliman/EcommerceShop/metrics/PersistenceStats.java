@@ -0,0 +1,38 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Persistence work of the HTTP request on the current thread: statements executed, rows read,
+ * time in JDBC calls and time waiting for a pooled connection. Filled in by
+ * {@link InstrumentedDataSource}; work on other threads (streaming response bodies, the
+ * group-commit committer) belongs to no request and is not counted.
+ */
+public final class PersistenceStats {
+
+    private static final ThreadLocal<PersistenceStats> CURRENT = new ThreadLocal<>();
+
+    final HttpServletRequest request;
+    int statements;
+    long rows;
+    long jdbcNanos;
+    long connectionWaitNanos;
+
+    private PersistenceStats(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    static PersistenceStats begin(HttpServletRequest request) {
+        PersistenceStats stats = new PersistenceStats(request);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static PersistenceStats current() {
+        return CURRENT.get();
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+}
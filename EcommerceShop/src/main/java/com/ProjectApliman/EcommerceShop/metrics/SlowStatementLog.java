@@ -0,0 +1,58 @@
+package com.ProjectApliman.EcommerceShop.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs statements slower than {@code threshold} with their endpoint, SQL and bind-parameter
+ * shapes (types and lengths, never values). Every slow statement is counted; only a sample
+ * of them is logged, and at most {@code max-per-second}, so a slow database cannot flood the log.
+ */
+@Component
+public class SlowStatementLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowStatementLog.class);
+
+    private final long thresholdNanos;
+    private final double sampleRate;
+    private final long intervalNanos;
+    private final Counter slowStatements;
+    // Earliest time the next line may be logged
+    private final AtomicLong nextLogAt = new AtomicLong(System.nanoTime());
+
+    public SlowStatementLog(MeterRegistry meterRegistry,
+                            @Value("${shop.persistence.slow-statement.threshold:200ms}") Duration threshold,
+                            @Value("${shop.persistence.slow-statement.sample-rate:0.1}") double sampleRate,
+                            @Value("${shop.persistence.slow-statement.max-per-second:10}") int maxPerSecond) {
+        this.thresholdNanos = threshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.intervalNanos = 1_000_000_000L / Math.max(1, maxPerSecond);
+        this.slowStatements = meterRegistry.counter("persistence_slow_statements_total");
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    void record(PersistenceStats stats, String sql, String parameterShapes, long elapsedNanos) {
+        slowStatements.increment();
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        long now = System.nanoTime();
+        long next = nextLogAt.get();
+        if (now - next < 0 || !nextLogAt.compareAndSet(next, now + intervalNanos)) {
+            return;
+        }
+        log.warn("Slow statement: {} ms on {} [{}] params ({})", elapsedNanos / 1_000_000,
+                PersistenceMetricsFilter.endpoint(stats.request), sql, parameterShapes);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ProjectApliman.EcommerceShop.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.util.Date;
+
+@Entity
+@Immutable // Rows are only ever written by the archival job's INSERT ... SELECT
+@Table(name = "invoice_archive")
+@Data
+public class ArchivedInvoice {
+
+    @Id
+    private Long id; // Same id the invoice had in the hot table
+
+    private Long userId;
+    private double totalAmount;
+    private Date purchaseDate;
+
+}
@@ -0,0 +1,23 @@
+package com.ProjectApliman.EcommerceShop.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+@Entity
+@Immutable
+@Table(name = "invoice_item_archive")
+@Data
+public class ArchivedInvoiceItem {
+
+    @Id
+    private Long id;
+
+    private Long invoiceId; // Plain ids rather than associations; the item may have been deleted since
+    private Long itemId;
+    private int quantity;
+    private double price;
+
+}
@@ -0,0 +1,43 @@
+package com.ProjectApliman.EcommerceShop.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import lombok.Data;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Date;
+
+@Entity
+@Data
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    private String idempotencyKey; // The client's Idempotency-Key header
+
+    private Long userId;
+    private String requestHash; // SHA-256 of buyer and basket; a key reused for another purchase is refused
+    private Long invoiceId; // The invoice the first request created
+    private Date createdAt;
+
+    @Transient
+    private boolean stored; // Loaded or inserted, so save() never has to look it up first
+
+    @Override
+    public String getId() {
+        return idempotencyKey;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !stored;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        stored = true;
+    }
+}
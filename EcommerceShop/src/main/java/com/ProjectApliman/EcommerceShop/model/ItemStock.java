@@ -0,0 +1,16 @@
+package com.ProjectApliman.EcommerceShop.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.Data;
+
+@Entity
+@Data
+public class ItemStock {
+
+    @Id
+    private Long itemId; // Same id as the item; items without a row are not stock-tracked
+
+    private long available; // Units left to sell, less sales still in item_stock_journal
+
+}
@@ -0,0 +1,52 @@
+package com.ProjectApliman.EcommerceShop.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The columns a client asked for with {@code fields=}, checked against what the resource
+ * allows. The id always comes first, whether requested or not, since keyset cursors and
+ * clients need it. Invoice line fields are requested as {@code items.<field>}; asking for any
+ * of them brings the line id along in the same way.
+ */
+public record Fieldset(List<String> fields, List<String> lineFields) {
+
+    private static final String LINE_PREFIX = "items.";
+
+    public static Fieldset parse(String requested, List<String> allowed) {
+        return parse(requested, allowed, List.of());
+    }
+
+    /**
+     * @param allowed the resource's fields, its id first
+     * @param allowedLines the fields of its lines, their id first
+     * @throws IllegalArgumentException for a field that is not allowed
+     */
+    public static Fieldset parse(String requested, List<String> allowed, List<String> allowedLines) {
+        Set<String> fields = new LinkedHashSet<>();
+        Set<String> lineFields = new LinkedHashSet<>();
+        fields.add(allowed.get(0));
+        for (String field : requested.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) {
+                continue;
+            }
+            if (field.startsWith(LINE_PREFIX) && allowedLines.contains(field.substring(LINE_PREFIX.length()))) {
+                lineFields.add(field.substring(LINE_PREFIX.length()));
+            } else if (allowed.contains(field)) {
+                fields.add(field);
+            } else {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        if (!lineFields.isEmpty()) {
+            lines.add(allowedLines.get(0));
+            lineFields.remove(allowedLines.get(0));
+            lines.addAll(lineFields);
+        }
+        return new Fieldset(new ArrayList<>(fields), lines);
+    }
+}
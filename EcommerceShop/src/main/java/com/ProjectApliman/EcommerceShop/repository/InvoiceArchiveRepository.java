@@ -0,0 +1,31 @@
+package com.ProjectApliman.EcommerceShop.repository;
+
+import com.ProjectApliman.EcommerceShop.model.ArchivedInvoice;
+import com.ProjectApliman.EcommerceShop.model.ArchivedInvoiceItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Transactional(readOnly = true)
+public interface InvoiceArchiveRepository extends JpaRepository<ArchivedInvoice, Long> {
+
+    @Query("SELECT a FROM ArchivedInvoice a WHERE a.userId IN :userIds ORDER BY a.id")
+    List<ArchivedInvoice> findByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    @Query("SELECT l FROM ArchivedInvoiceItem l WHERE l.invoiceId IN :invoiceIds ORDER BY l.id")
+    List<ArchivedInvoiceItem> findLinesByInvoiceIdIn(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    // Archived counterparts of the sales rollup queries, added to the hot table's totals
+    @Query("SELECT a.userId, COUNT(a), SUM(a.totalAmount) FROM ArchivedInvoice a GROUP BY a.userId")
+    List<Object[]> totalsByUser();
+
+    @Query("SELECT extract(date from a.purchaseDate), COUNT(a), SUM(a.totalAmount) FROM ArchivedInvoice a GROUP BY extract(date from a.purchaseDate)")
+    List<Object[]> totalsByDay();
+
+    @Query("SELECT l.itemId, SUM(l.quantity), SUM(l.price) FROM ArchivedInvoiceItem l GROUP BY l.itemId")
+    List<Object[]> totalsByItem();
+}
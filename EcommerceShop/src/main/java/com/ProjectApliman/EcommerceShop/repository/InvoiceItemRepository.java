@@ -2,6 +2,15 @@ package com.ProjectApliman.EcommerceShop.repository;
 
 import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
+@Transactional(readOnly = true)
 public interface InvoiceItemRepository extends JpaRepository<InvoiceItem, Long> {
+
+    // [itemId, units sold, revenue] for rebuilding the sales rollups
+    @Query("SELECT li.item.itemId, SUM(li.quantity), SUM(li.price) FROM InvoiceItem li GROUP BY li.item.itemId")
+    List<Object[]> totalsByItem();
 }
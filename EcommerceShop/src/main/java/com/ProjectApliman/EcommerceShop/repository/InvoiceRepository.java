@@ -1,19 +1,61 @@
 package com.ProjectApliman.EcommerceShop.repository;
 
 import com.ProjectApliman.EcommerceShop.model.Invoice;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
+// Reads take a lower bound on purchaseDate (InvoicePeriods.hotSince() for the hot window), which
+// lets MySQL prune the invoice partitions before it; InvoicePeriods.ALL reads the whole hot table
+@Transactional(readOnly = true)
 public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
 
+    // Listings load the user, lines and their items in the same query as the invoices,
+    // so serialising the response never triggers lazy loads
+    @Override
+    @EntityGraph(attributePaths = {"user", "items", "items.item"})
+    List<Invoice> findAll();
+
+    @EntityGraph(attributePaths = {"user", "items", "items.item"})
+    @Query("SELECT i FROM Invoice i WHERE i.purchaseDate >= :since")
+    List<Invoice> findSince(@Param("since") Date since);
+
     // Custom query to find invoices by customer ID
-    @Query("SELECT i FROM Invoice i WHERE i.user.id = :customerId")
-    List<Invoice> findByCustomerId(@Param("customerId") Long customerId);
+    @EntityGraph(attributePaths = {"user", "items", "items.item"})
+    @Query("SELECT i FROM Invoice i WHERE i.user.id = :customerId AND i.purchaseDate >= :since")
+    List<Invoice> findByCustomerId(@Param("customerId") Long customerId, @Param("since") Date since);
 
     // Custom query to find invoices by customer's name (case-insensitive)
-    @Query("SELECT i FROM Invoice i WHERE LOWER(i.user.name) LIKE LOWER(CONCAT('%', :customerName, '%'))")
-    List<Invoice> findByCustomerName(@Param("customerName") String customerName);
+    @EntityGraph(attributePaths = {"user", "items", "items.item"})
+    @Query("SELECT i FROM Invoice i WHERE LOWER(i.user.name) LIKE LOWER(CONCAT('%', :customerName, '%')) AND i.purchaseDate >= :since")
+    List<Invoice> findByCustomerName(@Param("customerName") String customerName, @Param("since") Date since);
+
+    // Invoices of the given users; the name search resolves the users from the search index first
+    @EntityGraph(attributePaths = {"user", "items", "items.item"})
+    @Query("SELECT i FROM Invoice i WHERE i.user.id IN :userIds AND i.purchaseDate >= :since")
+    List<Invoice> findByCustomerIdIn(@Param("userIds") Collection<Long> userIds, @Param("since") Date since);
+
+    // Keyset page of invoice ids; paging ids first keeps LIMIT in SQL when the lines are fetched
+    @Query("SELECT i.id FROM Invoice i WHERE i.id > :after AND i.purchaseDate >= :since ORDER BY i.id")
+    List<Long> findIdsAfter(@Param("after") Long after, @Param("since") Date since, Pageable pageable);
+
+    // Invoices with their user, lines and items loaded in one query
+    @Query("SELECT DISTINCT i FROM Invoice i JOIN FETCH i.user LEFT JOIN FETCH i.items li LEFT JOIN FETCH li.item "
+            + "WHERE i.id IN :ids AND i.purchaseDate >= :since ORDER BY i.id")
+    List<Invoice> findWithLinesByIdIn(@Param("ids") Collection<Long> ids, @Param("since") Date since);
+
+    // [userId, invoice count, revenue] for rebuilding the sales rollups
+    @Query("SELECT i.user.id, COUNT(i), SUM(i.totalAmount) FROM Invoice i GROUP BY i.user.id")
+    List<Object[]> totalsByUser();
+
+    // [day, invoice count, revenue] for rebuilding the sales rollups
+    @Query("SELECT extract(date from i.purchaseDate), COUNT(i), SUM(i.totalAmount) FROM Invoice i GROUP BY extract(date from i.purchaseDate)")
+    List<Object[]> totalsByDay();
 }
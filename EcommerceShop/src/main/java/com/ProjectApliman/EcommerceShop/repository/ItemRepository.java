@@ -1,15 +1,27 @@
 package com.ProjectApliman.EcommerceShop.repository;
 
 import com.ProjectApliman.EcommerceShop.model.Item;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+// Read-only by default so reads outside a write transaction can use the replica;
+// save and delete keep their read-write transactions from SimpleJpaRepository
+@Transactional(readOnly = true)
 public interface ItemRepository extends JpaRepository<Item,Long> {
 
     // Custom query to search items by name (case-insensitive)
     @Query("SELECT i FROM Item i WHERE LOWER(i.itemname) LIKE LOWER(CONCAT('%', :name, '%'))")
     List<Item> findByItemnameContaining(@Param("name") String name);
+
+    // Keyset page: items after the given id, in id order
+    List<Item> findByItemIdGreaterThanOrderByItemIdAsc(Long itemId, Pageable pageable);
+
+    // [itemId, itemname] pairs in id order, for building the search index
+    @Query("SELECT i.itemId, i.itemname FROM Item i WHERE i.itemId > :after ORDER BY i.itemId")
+    List<Object[]> findIndexEntriesAfter(@Param("after") Long after, Pageable pageable);
 }
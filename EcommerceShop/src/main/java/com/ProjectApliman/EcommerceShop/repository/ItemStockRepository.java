@@ -0,0 +1,7 @@
+package com.ProjectApliman.EcommerceShop.repository;
+
+import com.ProjectApliman.EcommerceShop.model.ItemStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ItemStockRepository extends JpaRepository<ItemStock, Long> {
+}
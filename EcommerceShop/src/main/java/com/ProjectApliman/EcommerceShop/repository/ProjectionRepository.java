@@ -0,0 +1,177 @@
+package com.ProjectApliman.EcommerceShop.repository;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sparse fieldset reads ({@code fields=} on the list endpoints): criteria tuple queries that
+ * select only the requested columns, returned as maps holding just those keys. No entity is
+ * built, so nothing else is read from the database, managed or serialised.
+ */
+@Repository
+@Transactional(readOnly = true)
+public class ProjectionRepository {
+
+    // Allowed fields of each resource, id first
+    public static final List<String> ITEM_FIELDS = List.of("itemId", "itemname", "itemdescription", "itemvalue", "itemimage");
+    public static final List<String> USER_FIELDS = List.of("id", "username", "name", "email");
+    public static final List<String> INVOICE_FIELDS = List.of("id", "totalAmount", "purchaseDate", "userId", "userName");
+    public static final List<String> INVOICE_LINE_FIELDS = List.of("id", "quantity", "price", "itemId", "itemname");
+
+    @FunctionalInterface
+    private interface Filter<T> {
+        Predicate on(CriteriaBuilder cb, Root<T> root);
+    }
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** Items after {@code after} in id order, at most {@code limit} of them; all items when both are null. */
+    public List<Map<String, Object>> items(Fieldset fieldset, Long after, Integer limit) {
+        return select(Item.class, fieldset, after == null ? null : (cb, item) -> cb.gt(item.<Long>get("itemId"), after), limit);
+    }
+
+    public List<Map<String, Object>> itemsById(Fieldset fieldset, Collection<Long> ids) {
+        return ids.isEmpty() ? List.of() : select(Item.class, fieldset, (cb, item) -> item.get("itemId").in(ids), null);
+    }
+
+    public List<Map<String, Object>> itemsByName(Fieldset fieldset, String name) {
+        return select(Item.class, fieldset, (cb, item) -> contains(cb, item.<String>get("itemname"), name), null);
+    }
+
+    /** Users after {@code after} in id order, at most {@code limit} of them; all users when both are null. */
+    public List<Map<String, Object>> users(Fieldset fieldset, Long after, Integer limit) {
+        return select(User.class, fieldset, after == null ? null : (cb, user) -> cb.gt(user.<Long>get("id"), after), limit);
+    }
+
+    /** The invoices purchased since {@code since} with the given ids, or all of them for {@code null}. */
+    public List<Map<String, Object>> invoices(Fieldset fieldset, Collection<Long> ids, Date since) {
+        if (ids == null) {
+            return selectInvoices(fieldset, null, since);
+        }
+        return ids.isEmpty() ? List.of() : selectInvoices(fieldset, (cb, invoice) -> invoice.get("id").in(ids), since);
+    }
+
+    public List<Map<String, Object>> invoicesByCustomerIds(Fieldset fieldset, Collection<Long> userIds, Date since) {
+        return userIds.isEmpty() ? List.of()
+                : selectInvoices(fieldset, (cb, invoice) -> invoice.get("user").get("id").in(userIds), since);
+    }
+
+    public List<Map<String, Object>> invoicesByCustomerName(Fieldset fieldset, String customerName, Date since) {
+        return selectInvoices(fieldset, (cb, invoice) -> contains(cb, invoice.get("user").<String>get("name"), customerName), since);
+    }
+
+    private <T> List<Map<String, Object>> select(Class<T> entity, Fieldset fieldset, Filter<T> where, Integer limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entity);
+        query.multiselect(fieldset.fields().stream().<Selection<?>>map(root::get).toList());
+        if (where != null) {
+            query.where(where.on(cb, root));
+        }
+        query.orderBy(cb.asc(root.get(fieldset.fields().get(0))));
+        TypedQuery<Tuple> typed = entityManager.createQuery(query);
+        if (limit != null) {
+            typed.setMaxResults(limit);
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Tuple tuple : typed.getResultList()) {
+            rows.add(toMap(tuple, fieldset.fields(), 0));
+        }
+        return rows;
+    }
+
+    // Invoice columns, and with line fields one row per line (left joined, so invoices without lines stay).
+    // The purchaseDate bound is what lets MySQL prune the invoice partitions, as in InvoiceRepository
+    private List<Map<String, Object>> selectInvoices(Fieldset fieldset, Filter<Invoice> where, Date since) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Invoice> invoice = query.from(Invoice.class);
+        Join<Invoice, User> user = fieldset.fields().contains("userName") ? invoice.join("user") : null;
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String field : fieldset.fields()) {
+            selections.add(switch (field) {
+                case "userId" -> invoice.get("user").get("id");
+                case "userName" -> user.get("name");
+                default -> invoice.get(field);
+            });
+        }
+        Join<Invoice, InvoiceItem> line = null;
+        if (!fieldset.lineFields().isEmpty()) {
+            line = invoice.join("items", JoinType.LEFT);
+            Join<InvoiceItem, Item> item = fieldset.lineFields().contains("itemname") ? line.join("item", JoinType.LEFT) : null;
+            for (String field : fieldset.lineFields()) {
+                Path<?> path = switch (field) {
+                    case "itemId" -> line.get("item").get("itemId");
+                    case "itemname" -> item.get("itemname");
+                    default -> line.get(field);
+                };
+                selections.add(path);
+            }
+        }
+        query.multiselect(selections);
+        Predicate recent = cb.greaterThanOrEqualTo(invoice.<Date>get("purchaseDate"), since);
+        query.where(where == null ? recent : cb.and(where.on(cb, invoice), recent));
+        query.orderBy(line == null
+                ? List.of(cb.asc(invoice.get("id")))
+                : List.of(cb.asc(invoice.get("id")), cb.asc(line.get("id"))));
+        List<Tuple> tuples = entityManager.createQuery(query).getResultList();
+
+        List<Map<String, Object>> invoices = new ArrayList<>();
+        int lineStart = fieldset.fields().size();
+        Object currentId = null;
+        List<Map<String, Object>> lines = null;
+        for (Tuple tuple : tuples) {
+            if (!tuple.get(0).equals(currentId)) {
+                currentId = tuple.get(0);
+                Map<String, Object> row = toMap(tuple, fieldset.fields(), 0);
+                if (line != null) {
+                    lines = new ArrayList<>();
+                    row.put("items", lines);
+                }
+                invoices.add(row);
+            }
+            // A null line id is the left join's row for an invoice without lines
+            if (line != null && tuple.get(lineStart) != null) {
+                lines.add(toMap(tuple, fieldset.lineFields(), lineStart));
+            }
+        }
+        return invoices;
+    }
+
+    private static Predicate contains(CriteriaBuilder cb, Path<String> path, String text) {
+        return cb.like(cb.lower(path), "%" + text.toLowerCase(Locale.ROOT) + "%");
+    }
+
+    private static Map<String, Object> toMap(Tuple tuple, List<String> fields, int offset) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            row.put(fields.get(i), tuple.get(offset + i));
+        }
+        return row;
+    }
+}
@@ -2,12 +2,15 @@ package com.ProjectApliman.EcommerceShop.repository;
 
 import com.ProjectApliman.EcommerceShop.model.Item;
 import com.ProjectApliman.EcommerceShop.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+@Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User,Long> {
 
     // Custom query to search users by name (case-insensitive)
@@ -15,4 +18,11 @@ public interface UserRepository extends JpaRepository<User,Long> {
     List<User> findByNameContaining(@Param("name") String name);
 
     User name(String name);
+
+    // Keyset page: users after the given id, in id order
+    List<User> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    // [id, name] pairs in id order, for building the search index
+    @Query("SELECT u.id, u.name FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<Object[]> findIndexEntriesAfter(@Param("after") long after, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.ProjectApliman.EcommerceShop.search;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.User;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+/**
+ * Trigram indexes over item names and user names. They are built before the app starts
+ * serving requests and kept current by the controllers' writes.
+ */
+@Component
+public class SearchIndexes implements SmartInitializingSingleton {
+
+    /** INDEX resolves searches from the trigram indexes, LIKE always uses the SQL queries. */
+    public enum SearchMode { INDEX, LIKE }
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexes.class);
+    private static final int LOAD_CHUNK = 5000;
+
+    private final TrigramIndex items = new TrigramIndex();
+    private final TrigramIndex users = new TrigramIndex();
+
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final SearchMode mode;
+    private final int maxIndexIds;
+
+    public SearchIndexes(ItemRepository itemRepository, UserRepository userRepository,
+                         @Value("${shop.search.mode:INDEX}") SearchMode mode,
+                         @Value("${shop.search.max-index-ids:1000}") int maxIndexIds) {
+        this.itemRepository = itemRepository;
+        this.userRepository = userRepository;
+        this.mode = mode;
+        this.maxIndexIds = maxIndexIds;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (mode == SearchMode.INDEX) {
+            rebuild();
+        }
+    }
+
+    public void rebuild() {
+        long start = System.nanoTime();
+        load(items, after -> itemRepository.findIndexEntriesAfter(after, PageRequest.ofSize(LOAD_CHUNK)));
+        load(users, after -> userRepository.findIndexEntriesAfter(after, PageRequest.ofSize(LOAD_CHUNK)));
+        log.info("Search indexes built: {} items, {} users in {} ms",
+                items.size(), users.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Ids of items whose name contains the term, or empty when the caller should fall back to
+     * the LIKE query (index disabled, a term under three characters, or too many matches to
+     * fetch by primary key).
+     */
+    public Optional<List<Long>> itemIds(String term) {
+        return resolve(items, term);
+    }
+
+    /** Same as {@link #itemIds(String)} for user names. */
+    public Optional<List<Long>> userIds(String term) {
+        return resolve(users, term);
+    }
+
+    public void indexItem(Item item) {
+        if (mode == SearchMode.INDEX) {
+            items.put(item.getItemId(), item.getItemname());
+        }
+    }
+
+    public void removeItem(Long itemId) {
+        if (mode == SearchMode.INDEX) {
+            items.remove(itemId);
+        }
+    }
+
+    public void indexUser(User user) {
+        if (mode == SearchMode.INDEX) {
+            users.put(user.getId(), user.getName());
+        }
+    }
+
+    private Optional<List<Long>> resolve(TrigramIndex index, String term) {
+        // Short terms go straight to the database rather than scanning every name first
+        if (mode != SearchMode.INDEX || !TrigramIndex.canSearch(term)) {
+            return Optional.empty();
+        }
+        List<Long> ids = index.search(term);
+        return ids.size() > maxIndexIds ? Optional.empty() : Optional.of(ids);
+    }
+
+    // Rows are [id, name] pairs read in id order, chunk by chunk
+    private static void load(TrigramIndex index, LongFunction<List<Object[]>> chunkAfter) {
+        index.clear();
+        long after = 0;
+        List<Object[]> chunk;
+        do {
+            chunk = chunkAfter.apply(after);
+            for (Object[] row : chunk) {
+                after = ((Number) row[0]).longValue();
+                index.put(after, (String) row[1]);
+            }
+        } while (chunk.size() == LOAD_CHUNK);
+    }
+}
@@ -0,0 +1,122 @@
+package com.ProjectApliman.EcommerceShop.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory inverted index from lower-cased trigrams to ids, answering case-insensitive
+ * "contains" lookups like {@code LOWER(name) LIKE '%term%'} without scanning every row.
+ * Reads are lock-free; writes are serialised, they are rare compared to searches.
+ */
+public class TrigramIndex {
+
+    private static final int GRAM = 3;
+
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+    public synchronized void put(long id, String name) {
+        if (name == null) {
+            remove(id);
+            return;
+        }
+        String normalized = normalize(name);
+        Set<String> grams = trigrams(normalized);
+        // Add the new postings before publishing the name and only then drop the stale ones,
+        // so a concurrent search never misses an id that matches either version
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        String previous = names.put(id, normalized);
+        if (previous != null) {
+            for (String gram : trigrams(previous)) {
+                if (!grams.contains(gram)) {
+                    removePosting(gram, id);
+                }
+            }
+        }
+    }
+
+    public synchronized void remove(long id) {
+        String previous = names.remove(id);
+        if (previous != null) {
+            for (String gram : trigrams(previous)) {
+                removePosting(gram, id);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        names.clear();
+        postings.clear();
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Whether {@link #search} can answer the term. Terms shorter than a trigram have no posting
+     * list to narrow them down and match a large share of all names; they belong to the database.
+     */
+    public static boolean canSearch(String term) {
+        return term.length() >= GRAM;
+    }
+
+    // Ids whose name contains the term, ignoring case, in ascending id order
+    public List<Long> search(String term) {
+        if (!canSearch(term)) {
+            throw new IllegalArgumentException("Terms shorter than " + GRAM + " characters are not indexed");
+        }
+        String needle = normalize(term);
+        // Every match contains every trigram of the term, so the rarest posting list is a
+        // complete candidate set; candidates are confirmed against the stored name
+        Set<Long> candidates = null;
+        for (String gram : trigrams(needle)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return List.of();
+            }
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+        List<Long> matches = new ArrayList<>();
+        for (Long id : candidates) {
+            String name = names.get(id);
+            if (name != null && name.contains(needle)) {
+                matches.add(id);
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    private void removePosting(String gram, long id) {
+        Set<Long> ids = postings.get(gram);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(gram, ids);
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
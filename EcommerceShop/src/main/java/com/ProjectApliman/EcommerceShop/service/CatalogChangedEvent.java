@@ -0,0 +1,8 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+/**
+ * Published by {@link ItemCatalog} after an item was stored or deleted; {@code itemId} is null
+ * after a bulk write.
+ */
+public record CatalogChangedEvent(Long itemId) {
+}
@@ -0,0 +1,161 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The full item list as ready-to-send JSON, plain and gzipped, so {@code GET /items} costs a
+ * buffer copy instead of Jackson and gzip on every request. Item writes trigger a rebuild on a
+ * background thread; readers take whatever snapshot the volatile field holds, and only use it
+ * while it still carries the current ETag version, falling back to the regular path otherwise.
+ */
+@Component
+public class CatalogSnapshot implements SmartInitializingSingleton {
+
+    public record Snapshot(String etag, byte[] json, byte[] gzip) {
+
+        public ResponseEntity<byte[]> toResponse(String acceptEncoding) {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsGzip(acceptEncoding)) {
+                return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+            }
+            return response.body(json);
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshot.class);
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final ItemCatalog itemCatalog;
+    private final ResourceVersions resourceVersions;
+    private final ObjectMapper objectMapper;
+    private final Timer rebuilds;
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("catalog-snapshot").daemon().factory());
+    // Coalesces bursts of writes into one pending rebuild
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+
+    private volatile Snapshot current;
+
+    public CatalogSnapshot(ItemCatalog itemCatalog, ResourceVersions resourceVersions, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+        this.itemCatalog = itemCatalog;
+        this.resourceVersions = resourceVersions;
+        this.objectMapper = objectMapper;
+        this.rebuilds = meterRegistry.timer("catalog_snapshot_rebuild_seconds");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        requestRebuild();
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        requestRebuild();
+    }
+
+    /** The snapshot, if it matches the current catalog version. */
+    public Optional<Snapshot> current() {
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.etag().equals(resourceVersions.tag(ResourceVersions.Resource.ITEMS))) {
+            return Optional.of(snapshot);
+        }
+        requestRebuild();
+        return Optional.empty();
+    }
+
+    private void requestRebuild() {
+        if (rebuildPending.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                // Cleared first, so a write landing during the rebuild schedules another one
+                rebuildPending.set(false);
+                try {
+                    rebuilds.record(this::rebuild);
+                } catch (RuntimeException e) {
+                    log.warn("Catalog snapshot rebuild failed; /items is served without it", e);
+                }
+            });
+        }
+    }
+
+    private void rebuild() {
+        // Version before data, as for the ETag of a regular read
+        String etag = resourceVersions.tag(ResourceVersions.Resource.ITEMS);
+        List<Item> items = itemCatalog.findAll();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(items);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            }
+            current = new Snapshot(etag, json, compressed.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Whether JSON is what the client prefers, so the snapshot can answer. Clients asking for a
+     * binary format first go through content negotiation instead.
+     */
+    public static boolean prefersJson(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return true;
+        }
+        double json = 0;
+        double binary = 0;
+        for (MediaType type : MediaType.parseMediaTypes(accept)) {
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, type.getQualityValue());
+            } else if (type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR) || type.equalsTypeAndSubtype(SMILE)) {
+                binary = Math.max(binary, type.getQualityValue());
+            }
+        }
+        return json > 0 && json >= binary;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equals("gzip") || parts[0].trim().equals("*")) {
+                // gzip;q=0 explicitly refuses it
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
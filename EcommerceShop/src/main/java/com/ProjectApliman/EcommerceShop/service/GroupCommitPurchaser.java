@@ -0,0 +1,253 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Optional purchase path for bursts: callers enqueue their basket and a single committer thread
+ * writes up to {@code max-batch} purchases (or whatever arrived within {@code max-wait}) in one
+ * transaction, so many checkouts share one commit and one pooled connection.
+ */
+@Component
+public class GroupCommitPurchaser implements SmartLifecycle {
+
+    public enum PurchaseMode {
+        DIRECT,
+        GROUP_COMMIT
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitPurchaser.class);
+
+    /**
+     * The caller stopped waiting after its purchase was taken into a batch: it may still commit.
+     * A retry with the same Idempotency-Key returns the invoice if it did.
+     */
+    public static class CommitPendingException extends RuntimeException {
+        private final transient CompletableFuture<Invoice> outcome;
+
+        public CommitPendingException(String message, CompletableFuture<Invoice> outcome) {
+            super(message);
+            this.outcome = outcome;
+        }
+
+        /** Completes with the invoice, or the error, once the batch holding the purchase has finished. */
+        public CompletableFuture<Invoice> outcome() {
+            return outcome;
+        }
+    }
+
+    private record PendingPurchase(PurchaseRequest request, CompletableFuture<Invoice> result) {
+    }
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final Duration callerTimeout;
+    private final BlockingQueue<PendingPurchase> queue;
+    private final Counter rejected;
+    private final Counter withdrawn;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+    private Thread committer;
+
+    public GroupCommitPurchaser(MeterRegistry meterRegistry,
+                                @Value("${shop.purchase.mode:DIRECT}") PurchaseMode mode,
+                                @Value("${shop.purchase.queue-capacity:2000}") int queueCapacity,
+                                @Value("${shop.purchase.max-batch:100}") int maxBatch,
+                                @Value("${shop.purchase.max-wait:5ms}") Duration maxWait,
+                                @Value("${shop.purchase.caller-timeout:10s}") Duration callerTimeout) {
+        this.enabled = mode == PurchaseMode.GROUP_COMMIT;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.callerTimeout = callerTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.rejected = meterRegistry.counter("purchase_queue_rejected_total");
+        this.withdrawn = meterRegistry.counter("purchase_queue_withdrawn_total");
+        this.batchSizes = meterRegistry.summary("purchase_batch_size");
+        meterRegistry.gauge("purchase_queue_depth", queue, BlockingQueue::size);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enqueues the basket and waits up to {@code caller-timeout} for the batch holding it to
+     * commit. A purchase still queued when the wait ends is taken out of the queue and never runs.
+     *
+     * @throws RejectedExecutionException when the queue is full, or the purchase was withdrawn
+     *                                    unstarted, and the caller should back off and retry
+     * @throws CommitPendingException     when the wait ended with the purchase already in a batch
+     */
+    public Invoice purchase(Long userId, List<InvoiceItem> purchasedItems) {
+        return purchase(new PurchaseRequest(userId, purchasedItems));
+    }
+
+    public Invoice purchase(PurchaseRequest request) {
+        PendingPurchase pending = enqueue(request);
+        try {
+            return pending.result().get(callerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw withdraw(pending, "Purchase not committed within " + callerTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw withdraw(pending, "Interrupted while waiting for purchase");
+        }
+    }
+
+    public CompletableFuture<Invoice> submit(PurchaseRequest request) {
+        return enqueue(request).result();
+    }
+
+    private PendingPurchase enqueue(PurchaseRequest request) {
+        if (!running) {
+            throw new RejectedExecutionException("Group commit is not running");
+        }
+        PendingPurchase pending = new PendingPurchase(request, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Purchase queue is full");
+        }
+        return pending;
+    }
+
+    // Once the committer has taken the purchase it can no longer be stopped, only stopped waiting for
+    private RuntimeException withdraw(PendingPurchase pending, String reason) {
+        if (queue.remove(pending)) {
+            withdrawn.increment();
+            return new RejectedExecutionException(reason + "; withdrawn before it started");
+        }
+        return new CommitPendingException(reason + "; it may still commit", pending.result());
+    }
+
+    private void drainLoop() {
+        List<PendingPurchase> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPurchase first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Linger up to max-wait so concurrent checkouts can join the same commit
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatch || remaining <= 0) {
+                        break;
+                    }
+                    PendingPurchase next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Nothing interrupts the committer on purpose; treat it as a shutdown and drain what is queued
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingPurchase> batch) {
+        batchSizes.record(batch.size());
+        List<PurchaseRequest> requests = new ArrayList<>(batch.size());
+        for (PendingPurchase pending : batch) {
+            requests.add(pending.request());
+        }
+        List<PurchaseService.PurchaseOutcome> outcomes;
+        try {
+            outcomes = purchaseService.purchaseBatch(requests);
+        } catch (RuntimeException e) {
+            // The whole batch rolled back; retry one by one so a single bad basket does not fail the rest
+            log.warn("Group commit of {} purchases failed, retrying individually", batch.size(), e);
+            for (PendingPurchase pending : batch) {
+                try {
+                    // Ids handed out by the rolled-back flush must not make the retry look like an update
+                    pending.request().items().forEach(line -> line.setId(null));
+                    PurchaseRequest request = pending.request();
+                    pending.result().complete(purchaseService.purchase(request.userId(), request.items(), request.idempotencyKey()));
+                } catch (RuntimeException single) {
+                    pending.result().completeExceptionally(single);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PurchaseService.PurchaseOutcome outcome = outcomes.get(i);
+            if (outcome.error() != null) {
+                batch.get(i).result().completeExceptionally(outcome.error());
+            } else {
+                batch.get(i).result().complete(outcome.invoice());
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        committer = Thread.ofPlatform().name("purchase-committer").start(this::drainLoop);
+    }
+
+    @Override
+    public void stop() {
+        // The committer notices within one poll interval and drains what is still queued before exiting
+        running = false;
+        if (committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            committer = null;
+        }
+    }
+
+    // Start before and stop after the web server, so in-flight checkouts drain during graceful shutdown
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,214 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.archive.InvoicePeriods;
+import com.ProjectApliman.EcommerceShop.model.IdempotencyKey;
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.repository.IdempotencyKeyRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Purchases under an {@code Idempotency-Key}. The first request with a key does the work; a
+ * duplicate arriving while it runs waits for its result, and one arriving later gets the same
+ * invoice back. Keys live in a bounded in-memory map for {@code ttl} and in the idempotency_key
+ * table, written in the purchase transaction, so retries after a restart, or to another
+ * instance, are still recognised. A failed purchase leaves no key behind and may be retried.
+ * A group-commit purchase the caller stopped waiting for stays in flight until its batch has
+ * finished, so a retry in the meantime waits for it rather than buying again.
+ */
+@Service
+public class IdempotentPurchases {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    /** The key was already used for a different buyer or basket. */
+    public static class KeyReusedException extends RuntimeException {
+        public KeyReusedException(String key) {
+            super("Idempotency-Key " + key + " was used for a different purchase");
+        }
+    }
+
+    /** The first request with this key is still running after the wait timeout. */
+    public static class StillInFlightException extends RuntimeException {
+        public StillInFlightException(String key) {
+            super("A purchase with Idempotency-Key " + key + " is still in progress");
+        }
+    }
+
+    /** The invoice, and whether it was replayed from an earlier request. */
+    public record Result(Invoice invoice, boolean replayed) {
+    }
+
+    private record Entry(String requestHash, CompletableFuture<Invoice> invoice) {
+    }
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final TransactionTemplate primaryTransaction;
+    private final Duration waitTimeout;
+    private final Duration retention;
+    private final Cache<String, Entry> keys;
+    private final Counter misses;
+    private final Counter inFlightHits;
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter reused;
+
+    public IdempotentPurchases(IdempotencyKeyRepository idempotencyKeyRepository, InvoiceRepository invoiceRepository,
+                               PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                               @Value("${shop.idempotency.max-keys:100000}") long maxKeys,
+                               @Value("${shop.idempotency.ttl:24h}") Duration ttl,
+                               @Value("${shop.idempotency.wait-timeout:10s}") Duration waitTimeout,
+                               @Value("${shop.idempotency.retention:7d}") Duration retention) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.invoiceRepository = invoiceRepository;
+        // Read-write, so the lookup goes to the primary: a replica may not have the key yet
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.waitTimeout = waitTimeout;
+        this.retention = retention;
+        this.keys = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(maxKeys).expireAfterWrite(ttl).recordStats().<String, Entry>build(),
+                "idempotency_keys");
+        this.misses = meterRegistry.counter("idempotency_requests_total", "outcome", "new");
+        this.inFlightHits = meterRegistry.counter("idempotency_requests_total", "outcome", "in_flight");
+        this.memoryHits = meterRegistry.counter("idempotency_requests_total", "outcome", "replayed_memory");
+        this.databaseHits = meterRegistry.counter("idempotency_requests_total", "outcome", "replayed_database");
+        this.reused = meterRegistry.counter("idempotency_requests_total", "outcome", "key_reused");
+    }
+
+    /**
+     * Runs {@code purchase} once per key. It receives the key row to insert with the invoice.
+     *
+     * @throws KeyReusedException     when the key belongs to another purchase
+     * @throws StillInFlightException when the first request does not finish within the wait timeout
+     */
+    public Result purchase(String key, Long userId, List<InvoiceItem> purchasedItems,
+                           Function<IdempotencyKey, Invoice> purchase) {
+        String requestHash = requestHash(userId, purchasedItems);
+        Entry mine = new Entry(requestHash, new CompletableFuture<>());
+        Entry existing = keys.asMap().putIfAbsent(key, mine);
+        if (existing != null) {
+            if (!existing.requestHash().equals(requestHash)) {
+                reused.increment();
+                throw new KeyReusedException(key);
+            }
+            (existing.invoice().isDone() ? memoryHits : inFlightHits).increment();
+            return new Result(await(key, existing.invoice()), true);
+        }
+
+        try {
+            Optional<Invoice> stored = storedInvoice(key, requestHash);
+            if (stored.isPresent()) {
+                databaseHits.increment();
+                mine.invoice().complete(stored.get());
+                return new Result(stored.get(), true);
+            }
+            misses.increment();
+            Invoice invoice;
+            try {
+                invoice = purchase.apply(newKey(key, userId, requestHash));
+            } catch (DataIntegrityViolationException e) {
+                // Another instance committed the same key first
+                invoice = storedInvoice(key, requestHash).orElseThrow(() -> e);
+            }
+            mine.invoice().complete(invoice);
+            return new Result(invoice, false);
+        } catch (GroupCommitPurchaser.CommitPendingException e) {
+            // Still in a batch: the key is settled by the batch's outcome, not by this caller giving up
+            e.outcome().whenComplete((invoice, error) -> {
+                if (error == null) {
+                    mine.invoice().complete(invoice);
+                } else {
+                    keys.asMap().remove(key, mine);
+                    mine.invoice().completeExceptionally(error);
+                }
+            });
+            throw e;
+        } catch (RuntimeException e) {
+            // Nothing was stored: waiting duplicates get the error, later retries start over
+            keys.asMap().remove(key, mine);
+            mine.invoice().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${shop.idempotency.purge-interval:1h}")
+    public void purgeExpired() {
+        idempotencyKeyRepository.deleteCreatedBefore(new Date(System.currentTimeMillis() - retention.toMillis()));
+    }
+
+    private Invoice await(String key, CompletableFuture<Invoice> invoice) {
+        try {
+            return invoice.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new StillInFlightException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StillInFlightException(key);
+        }
+    }
+
+    private Optional<Invoice> storedInvoice(String key, String requestHash) {
+        return primaryTransaction.execute(status -> idempotencyKeyRepository.findById(key).map(stored -> {
+            if (!stored.getRequestHash().equals(requestHash)) {
+                reused.increment();
+                throw new KeyReusedException(key);
+            }
+            return invoiceRepository.findWithLinesByIdIn(List.of(stored.getInvoiceId()), InvoicePeriods.ALL).get(0);
+        }));
+    }
+
+    private static IdempotencyKey newKey(String key, Long userId, String requestHash) {
+        IdempotencyKey idempotencyKey = new IdempotencyKey();
+        idempotencyKey.setIdempotencyKey(key);
+        idempotencyKey.setUserId(userId);
+        idempotencyKey.setRequestHash(requestHash);
+        idempotencyKey.setCreatedAt(new Date());
+        return idempotencyKey;
+    }
+
+    // Buyer and lines as sent, before pricing fills anything in
+    static String requestHash(Long userId, List<InvoiceItem> purchasedItems) {
+        StringBuilder request = new StringBuilder().append(userId);
+        for (InvoiceItem line : purchasedItems) {
+            request.append('|').append(line.getItem() == null ? null : line.getItem().getItemId())
+                    .append('x').append(line.getQuantity());
+        }
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(request.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
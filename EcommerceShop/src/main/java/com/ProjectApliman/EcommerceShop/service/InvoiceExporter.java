@@ -0,0 +1,236 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.archive.InvoicePeriods;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams invoices with their lines for a purchase date range, straight from a forward-only
+ * database cursor to the response. Rows are read as a scalar projection, so nothing enters the
+ * persistence context and memory use does not depend on the size of the range. Ranges reaching
+ * back before the hot window read the archived invoices first, then the invoice table.
+ */
+@Service
+public class InvoiceExporter {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format parse(String format) {
+            return valueOf(format.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(InvoiceExporter.class);
+
+    // One row per invoice line, ordered so the lines of an invoice are adjacent. Lines are outer
+    // joined so an invoice without lines still gets its row, with the line columns null
+    private static final String EXPORT_QUERY = """
+            SELECT i.id, i.purchaseDate, u.id, u.name, i.totalAmount,
+                   ii.id, it.itemId, it.itemname, ii.quantity, ii.price
+            FROM Invoice i JOIN i.user u LEFT JOIN i.items ii LEFT JOIN ii.item it
+            WHERE i.purchaseDate >= :from AND i.purchaseDate < :to
+            ORDER BY i.id, ii.id""";
+
+    // The same row shape from the archive, driven by the purchase_date index on the headers with the
+    // lines joined by invoice_id; users and items are outer joined since the archive keeps lines of
+    // items deleted after the purchase
+    private static final String ARCHIVE_EXPORT_QUERY = """
+            SELECT a.id, a.purchaseDate, a.userId, u.name, a.totalAmount,
+                   l.id, l.itemId, it.itemname, l.quantity, l.price
+            FROM ArchivedInvoice a LEFT JOIN ArchivedInvoiceItem l ON l.invoiceId = a.id
+                 LEFT JOIN User u ON u.id = a.userId LEFT JOIN Item it ON it.itemId = l.itemId
+            WHERE a.purchaseDate >= :from AND a.purchaseDate < :to
+            ORDER BY a.id, l.id""";
+
+    private static final String CSV_HEADER =
+            "invoice_id,purchase_date,user_id,user_name,invoice_total,line_id,item_id,item_name,quantity,line_price\n";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate readOnlyTransaction;
+    private final InvoicePeriods invoicePeriods;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final Counter exportedRows;
+    private final Timer exports;
+
+    public InvoiceExporter(PlatformTransactionManager transactionManager, InvoicePeriods invoicePeriods, ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry, @Value("${shop.export.fetch-size:1000}") int fetchSize) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.invoicePeriods = invoicePeriods;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.exportedRows = meterRegistry.counter("invoice_export_rows_total");
+        this.exports = meterRegistry.timer("invoice_export_duration_seconds");
+    }
+
+    /**
+     * Writes the lines of invoices purchased from {@code from} to {@code to}, both days inclusive.
+     *
+     * @return the number of rows written: one per line, one for each invoice without lines
+     */
+    public long export(LocalDate from, LocalDate to, Format format, OutputStream out) {
+        long start = System.nanoTime();
+        Date fromDate = startOfDay(from);
+        Date toDate = startOfDay(to.plusDays(1));
+        // Archived invoices all predate the hot window, so they are written first
+        List<String> queries = fromDate.before(invoicePeriods.hotSince())
+                ? List.of(ARCHIVE_EXPORT_QUERY, EXPORT_QUERY)
+                : List.of(EXPORT_QUERY);
+        Long rows;
+        try {
+            rows = readOnlyTransaction.execute(status -> {
+                try {
+                    return format == Format.CSV
+                            ? writeCsv(queries, fromDate, toDate, out)
+                            : writeNdjson(queries, fromDate, toDate, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } finally {
+            // Failed exports (client gone, database error) are timed too
+            exports.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        long elapsed = System.nanoTime() - start;
+        long written = Objects.requireNonNullElse(rows, 0L);
+        exportedRows.increment(written);
+        log.info("Exported {} invoice rows ({} to {}, {}) in {} ms, {} rows/s", written, from, to, format,
+                elapsed / 1_000_000, elapsed == 0 ? 0 : written * 1_000_000_000L / elapsed);
+        return written;
+    }
+
+    private ScrollableResults<Object[]> scroll(String query, Date from, Date to) {
+        return entityManager.unwrap(Session.class)
+                .createSelectionQuery(query, Object[].class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+    }
+
+    private long writeCsv(List<String> queries, Date from, Date to, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(CSV_HEADER);
+        long rows = 0;
+        for (String query : queries) {
+            try (ScrollableResults<Object[]> cursor = scroll(query, from, to)) {
+                while (cursor.next()) {
+                    Object[] row = cursor.get();
+                    writer.write(row[0] + "," + ((Date) row[1]).toInstant() + "," + row[2] + "," + csv((String) row[3]) + ","
+                            + row[4] + "," + cell(row[5]) + "," + cell(row[6]) + "," + csv((String) row[7]) + ","
+                            + cell(row[8]) + "," + cell(row[9]) + "\n");
+                    rows++;
+                }
+            }
+        }
+        writer.flush();
+        return rows;
+    }
+
+    // One JSON object per invoice, its lines nested; only the invoice being written is held
+    private long writeNdjson(List<String> queries, Date from, Date to, OutputStream out) throws IOException {
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        long rows = 0;
+        Object invoiceId = null;
+        for (String query : queries) {
+            try (ScrollableResults<Object[]> cursor = scroll(query, from, to)) {
+                while (cursor.next()) {
+                    Object[] row = cursor.get();
+                    if (!row[0].equals(invoiceId)) {
+                        if (invoiceId != null) {
+                            endInvoice(json);
+                        }
+                        invoiceId = row[0];
+                        json.writeStartObject();
+                        json.writeObjectField("id", row[0]);
+                        json.writeStringField("purchaseDate", ((Date) row[1]).toInstant().toString());
+                        json.writeObjectField("userId", row[2]);
+                        json.writeStringField("userName", (String) row[3]);
+                        json.writeObjectField("totalAmount", row[4]);
+                        json.writeArrayFieldStart("items");
+                    }
+                    if (row[5] == null) {
+                        // An invoice without lines: the empty items array
+                        rows++;
+                        continue;
+                    }
+                    json.writeStartObject();
+                    json.writeObjectField("id", row[5]);
+                    json.writeObjectField("itemId", row[6]);
+                    json.writeStringField("itemname", (String) row[7]);
+                    json.writeObjectField("quantity", row[8]);
+                    json.writeObjectField("price", row[9]);
+                    json.writeEndObject();
+                    rows++;
+                }
+            }
+        }
+        if (invoiceId != null) {
+            endInvoice(json);
+        }
+        json.flush();
+        return rows;
+    }
+
+    private static void endInvoice(JsonGenerator json) throws IOException {
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    private static Date startOfDay(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static String cell(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
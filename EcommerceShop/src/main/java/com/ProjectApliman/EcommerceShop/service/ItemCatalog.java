@@ -0,0 +1,218 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.search.SearchIndexes;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache in front of {@link ItemRepository}. Item writes must go through
+ * {@link #save(Item)}, {@link #update(Long, Consumer)} and {@link #delete(Long)} so the cached entries are invalidated
+ * and the search index and ETag versions stay current.
+ */
+@Service
+public class ItemCatalog {
+
+    /**
+     * Where checkout reads item prices from. DATABASE always prices against the current row,
+     * CACHED trusts the cache and only loads the items it is missing.
+     */
+    public enum CheckoutConsistency { DATABASE, CACHED }
+
+    private static final String ALL_ITEMS = "all";
+    private static final String SEARCH_PREFIX = "search:";
+
+    // A query result is cached under the generation its load started in
+    private record QueryKey(long generation, String query) {}
+
+    private final ItemRepository itemRepository;
+    private final SearchIndexes searchIndexes;
+    private final ResourceVersions resourceVersions;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CheckoutConsistency checkoutConsistency;
+    // Read-write, so the read of a read-modify-write is routed to the primary with the write
+    private final TransactionTemplate transactionTemplate;
+
+    // Single items by id
+    private final Cache<Long, Item> itemsById;
+    // Whole-catalog and search results; any item write can change them, so writes clear them all
+    private final Cache<QueryKey, List<Item>> itemQueries;
+    // Bumped by every write. invalidateAll does not cancel loads already running, so a list read
+    // before the write would be cached again; keyed by the old generation, no reader finds it
+    private final AtomicLong generation = new AtomicLong();
+
+    public ItemCatalog(ItemRepository itemRepository, SearchIndexes searchIndexes, ResourceVersions resourceVersions,
+                       ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${shop.catalog.cache.max-items:10000}") long maxItems,
+                       @Value("${shop.catalog.cache.max-queries:1000}") long maxQueries,
+                       @Value("${shop.catalog.cache.ttl:10m}") Duration ttl,
+                       @Value("${shop.catalog.checkout-consistency:DATABASE}") CheckoutConsistency checkoutConsistency) {
+        this.itemRepository = itemRepository;
+        this.searchIndexes = searchIndexes;
+        this.resourceVersions = resourceVersions;
+        this.eventPublisher = eventPublisher;
+        this.checkoutConsistency = checkoutConsistency;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Size-bounded (W-TinyLFU eviction); the TTL only bounds staleness from writes made outside this app
+        this.itemsById = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(maxItems).expireAfterWrite(ttl).recordStats().<Long, Item>build(),
+                "items");
+        this.itemQueries = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(maxQueries).expireAfterWrite(ttl).recordStats().<QueryKey, List<Item>>build(),
+                "item_queries");
+    }
+
+    public List<Item> findAll() {
+        return itemQueries.get(queryKey(ALL_ITEMS), key -> List.copyOf(itemRepository.findAll()));
+    }
+
+    public Optional<Item> findById(Long id) {
+        // Missing items are not cached, the loader returning null leaves no entry behind
+        return Optional.ofNullable(itemsById.get(id, key -> itemRepository.findById(key).orElse(null)));
+    }
+
+    public List<Item> search(String name) {
+        Optional<List<Long>> ids = searchIndexes.itemIds(name);
+        if (ids.isEmpty()) {
+            return itemQueries.get(queryKey(SEARCH_PREFIX + name.toLowerCase(Locale.ROOT)),
+                    key -> List.copyOf(itemRepository.findByItemnameContaining(name)));
+        }
+        // Matching ids come from the index; the items themselves by primary key, cache first
+        Map<Long, Item> found = cachedOrLoaded(ids.get());
+        List<Item> result = new ArrayList<>(found.size());
+        for (Long id : ids.get()) {
+            Item item = found.get(id);
+            if (item != null) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    // Items for checkout, keyed by id; ids that do not exist are absent from the map
+    public Map<Long, Item> findForCheckout(Set<Long> ids) {
+        if (checkoutConsistency == CheckoutConsistency.CACHED) {
+            return cachedOrLoaded(ids);
+        }
+        return loadAndCache(ids);
+    }
+
+    public Item save(Item item) {
+        Item saved = itemRepository.save(item);
+        invalidate(saved.getItemId());
+        searchIndexes.indexItem(saved);
+        return saved;
+    }
+
+    /**
+     * Applies the changes to the current row and saves it, read and write in one transaction on
+     * the primary. Empty if the item does not exist.
+     */
+    public Optional<Item> update(Long id, Consumer<Item> changes) {
+        // Changes are applied to the row itself; cached items are shared between requests and must not be mutated
+        Optional<Item> saved = transactionTemplate.execute(status -> itemRepository.findById(id).map(item -> {
+            changes.accept(item);
+            return itemRepository.save(item);
+        }));
+        saved.ifPresent(item -> {
+            invalidate(id);
+            searchIndexes.indexItem(item);
+        });
+        return saved;
+    }
+
+    /** Deletes the item if it exists; false if it did not. */
+    public boolean delete(Long id) {
+        boolean deleted = Boolean.TRUE.equals(transactionTemplate.execute(status -> itemRepository.findById(id).map(item -> {
+            itemRepository.delete(item);
+            return true;
+        }).orElse(false)));
+        if (deleted) {
+            invalidate(id);
+            searchIndexes.removeItem(id);
+        }
+        return deleted;
+    }
+
+    /**
+     * For items written around the repository in bulk: indexes them and drops everything cached,
+     * instead of invalidating item by item.
+     */
+    public void bulkWritten(List<Item> items) {
+        for (Item item : items) {
+            searchIndexes.indexItem(item);
+        }
+        generation.incrementAndGet();
+        itemsById.invalidateAll();
+        itemQueries.invalidateAll();
+        resourceVersions.bumpAll(ResourceVersions.Resource.ITEMS);
+        eventPublisher.publishEvent(new CatalogChangedEvent(null));
+    }
+
+    private void invalidate(Long id) {
+        generation.incrementAndGet();
+        itemsById.invalidate(id);
+        itemQueries.invalidateAll();
+        resourceVersions.bump(ResourceVersions.Resource.ITEMS, id);
+        eventPublisher.publishEvent(new CatalogChangedEvent(id));
+    }
+
+    private QueryKey queryKey(String query) {
+        return new QueryKey(generation.get(), query);
+    }
+
+    // Cache hits plus the missing items loaded in one query. Not Cache.getAll: a bulk load caches
+    // whatever it read, even rows a write invalidated while it ran
+    private Map<Long, Item> cachedOrLoaded(Collection<Long> ids) {
+        Map<Long, Item> items = new HashMap<>(itemsById.getAllPresent(ids));
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            if (!items.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            items.putAll(loadAndCache(missing));
+        }
+        return items;
+    }
+
+    private Map<Long, Item> loadAndCache(Collection<Long> ids) {
+        long loadedIn = generation.get();
+        Map<Long, Item> items = loadAll(ids);
+        // Rows read before a write that has since invalidated them are returned but not cached
+        if (generation.get() == loadedIn) {
+            itemsById.putAll(items);
+        }
+        return items;
+    }
+
+    private Map<Long, Item> loadAll(Collection<Long> ids) {
+        Map<Long, Item> items = new HashMap<>();
+        for (Item item : itemRepository.findAllById(new ArrayList<Long>(ids))) {
+            items.put(item.getItemId(), item);
+        }
+        return items;
+    }
+}
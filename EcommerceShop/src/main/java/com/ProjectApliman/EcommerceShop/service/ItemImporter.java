@@ -0,0 +1,408 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Bulk item import from a JSON array or CSV. The body is parsed as a stream, rows are validated
+ * one by one and written in chunks of {@code shop.import.chunk-size}, one transaction and two JDBC
+ * batches per chunk: plain inserts for rows without an id, upserts for rows with one. A chunk
+ * the database rejects is retried row by row, so one bad row costs only itself.
+ */
+@Service
+public class ItemImporter {
+
+    public enum Format { JSON, CSV }
+
+    /** {@code row} is the position in the JSON array, or the line number in the CSV file. */
+    public record RowError(long row, String message) {
+    }
+
+    public record ImportResult(long rows, long imported, long failed, List<RowError> errors) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(ItemImporter.class);
+
+    private static final String INSERT =
+            "INSERT INTO item (itemname, itemdescription, itemvalue, itemimage) VALUES (?, ?, ?, ?)";
+    private static final String UPSERT =
+            "INSERT INTO item (item_id, itemname, itemdescription, itemvalue, itemimage) VALUES (?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE itemname = VALUES(itemname), itemdescription = VALUES(itemdescription), "
+                    + "itemvalue = VALUES(itemvalue), itemimage = VALUES(itemimage)";
+    private static final int MAX_TEXT_LENGTH = 255;
+    // Longer than any valid CSV record (three text fields of MAX_TEXT_LENGTH, every character a
+    // doubled quote); a quoted field still open past this is a stray quote, not a long field
+    private static final int MAX_RECORD_LENGTH = 4096;
+    // Only the first errors are reported; the failed count covers all of them
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private record Row(long number, Item item) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ItemCatalog itemCatalog;
+    private final int chunkSize;
+    private final Counter importedRows;
+    private final Counter failedRows;
+
+    public ItemImporter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                        ItemCatalog itemCatalog, MeterRegistry meterRegistry,
+                        @Value("${shop.import.chunk-size:5000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.itemCatalog = itemCatalog;
+        this.chunkSize = chunkSize;
+        this.importedRows = meterRegistry.counter("item_import_rows_total", "outcome", "imported");
+        this.failedRows = meterRegistry.counter("item_import_rows_total", "outcome", "failed");
+    }
+
+    public ImportResult importItems(InputStream in, Format format) throws IOException {
+        long start = System.nanoTime();
+        Load load = new Load();
+        try {
+            if (format == Format.JSON) {
+                readJson(in, load);
+            } else {
+                readCsv(in, load);
+            }
+        } finally {
+            // Whatever was read before a syntax error is still written
+            load.flush();
+        }
+        importedRows.increment(load.imported);
+        failedRows.increment(load.failed);
+        log.info("Imported {} of {} items ({} failed) in {} ms",
+                load.imported, load.rows, load.failed, (System.nanoTime() - start) / 1_000_000);
+        return new ImportResult(load.rows, load.imported, load.failed, load.errors);
+    }
+
+    private void readJson(InputStream in, Load load) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            long row = 0;
+            try {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    load.reject(1, "Expected a JSON array of items");
+                    return;
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    row++;
+                    // Each element is read on its own, so a value of the wrong shape only fails its row
+                    JsonNode element = parser.readValueAsTree();
+                    try {
+                        load.add(row, objectMapper.treeToValue(element, Item.class));
+                    } catch (JsonProcessingException e) {
+                        load.reject(row, "Invalid item: " + e.getOriginalMessage());
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // Malformed JSON: nothing after this point can be read reliably
+                load.reject(row + 1, "Malformed JSON, import stopped: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private void readCsv(InputStream in, Load load) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        String header = reader.readLine();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsv(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("itemname")) {
+            load.reject(1, "CSV header must name an itemname column");
+            return;
+        }
+        long line = 1;
+        // Lines read ahead for a record that was then rejected, to be read again as rows of their own
+        Deque<String> replay = new ArrayDeque<>();
+        String text;
+        while ((text = replay.isEmpty() ? reader.readLine() : replay.poll()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            // A quoted field may span lines (RFC 4180); the row keeps the number of its first line
+            long first = line;
+            if (isInQuotes(text)) {
+                StringBuilder record = new StringBuilder(text);
+                List<String> continuation = new ArrayList<>();
+                boolean inQuotes = true;
+                while (inQuotes && record.length() <= MAX_RECORD_LENGTH) {
+                    String next = replay.isEmpty() ? reader.readLine() : replay.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    continuation.add(next);
+                    record.append('\n').append(next);
+                    inQuotes = inQuotes != isInQuotes(next);
+                    line++;
+                }
+                if (inQuotes && record.length() > MAX_RECORD_LENGTH) {
+                    load.reject(first, "Quoted field not closed within " + MAX_RECORD_LENGTH + " characters");
+                    // Carry on from the line after the rejected one
+                    for (int i = continuation.size() - 1; i >= 0; i--) {
+                        replay.addFirst(continuation.get(i));
+                    }
+                    line = first;
+                    continue;
+                }
+                text = record.toString();
+            }
+            try {
+                List<String> values = splitCsv(text);
+                Item item = new Item();
+                String id = column(values, columns, "itemid");
+                item.setItemId(id == null ? null : Long.valueOf(id));
+                item.setItemname(column(values, columns, "itemname"));
+                item.setItemdescription(column(values, columns, "itemdescription"));
+                String value = column(values, columns, "itemvalue");
+                item.setItemvalue(value == null ? 0 : Double.parseDouble(value));
+                item.setItemimage(column(values, columns, "itemimage"));
+                load.add(first, item);
+            } catch (NumberFormatException e) {
+                load.reject(first, "Invalid number: " + e.getMessage());
+            } catch (IllegalArgumentException e) {
+                load.reject(first, e.getMessage());
+            }
+        }
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size()) {
+            return null;
+        }
+        String value = values.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    // An odd number of quotes leaves the record inside a quoted field; doubled quotes count twice
+    static boolean isInQuotes(String text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes % 2 == 1;
+    }
+
+    // RFC 4180 fields of one record: quoted fields may contain commas, doubled quotes and line breaks
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static String validate(Item item) {
+        if (item == null) {
+            return "Row is empty";
+        }
+        if (item.getItemId() != null && item.getItemId() <= 0) {
+            return "itemId must be positive";
+        }
+        if (item.getItemname() == null || item.getItemname().isBlank()) {
+            return "itemname is required";
+        }
+        if (!Double.isFinite(item.getItemvalue()) || item.getItemvalue() < 0) {
+            return "itemvalue must be a non-negative number";
+        }
+        for (String text : new String[]{item.getItemname(), item.getItemdescription(), item.getItemimage()}) {
+            if (text != null && text.length() > MAX_TEXT_LENGTH) {
+                return "Text fields are limited to " + MAX_TEXT_LENGTH + " characters";
+            }
+        }
+        return null;
+    }
+
+    // Rows of one import: the open chunk and the running totals
+    private final class Load {
+
+        private final List<Row> chunk = new ArrayList<>(chunkSize);
+        private final List<RowError> errors = new ArrayList<>();
+        private long rows;
+        private long imported;
+        private long failed;
+
+        void add(long number, Item item) {
+            rows++;
+            String error = validate(item);
+            if (error != null) {
+                fail(number, error);
+                return;
+            }
+            chunk.add(new Row(number, item));
+            if (chunk.size() == chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(long number, String message) {
+            rows++;
+            fail(number, message);
+        }
+
+        void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<Row> inserts = new ArrayList<>();
+            List<Row> upserts = new ArrayList<>();
+            for (Row row : chunk) {
+                (row.item().getItemId() == null ? inserts : upserts).add(row);
+            }
+            List<Item> written = new ArrayList<>(chunk.size());
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    insert(inserts);
+                    upsert(upserts);
+                });
+                chunk.forEach(row -> written.add(row.item()));
+            } catch (DataAccessException e) {
+                // Find the offending rows: retry each on its own, outside any batch.
+                // Ids read back by the rolled-back insert batch are void.
+                inserts.forEach(row -> row.item().setItemId(null));
+                retryEach(inserts, ItemImporter.this::insert, written);
+                retryEach(upserts, ItemImporter.this::upsert, written);
+            }
+            imported += written.size();
+            chunk.clear();
+            if (!written.isEmpty()) {
+                itemCatalog.bulkWritten(written);
+            }
+        }
+
+        private void retryEach(List<Row> rows, Consumer<List<Row>> write, List<Item> written) {
+            for (Row row : rows) {
+                try {
+                    write.accept(List.of(row));
+                    written.add(row.item());
+                } catch (DataAccessException rowError) {
+                    fail(row.number(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+
+        private void fail(long number, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(number, message));
+            }
+        }
+    }
+
+    // Batched insert that reads back the generated ids, so the new items can be indexed
+    private void insert(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT, new String[]{"item_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        Item item = rows.get(i).item();
+                        statement.setString(1, item.getItemname());
+                        statement.setString(2, item.getItemdescription());
+                        statement.setDouble(3, item.getItemvalue());
+                        statement.setString(4, item.getItemimage());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                }, keys);
+        List<Map<String, Object>> generated = keys.getKeyList();
+        for (int i = 0; i < rows.size() && i < generated.size(); i++) {
+            rows.get(i).item().setItemId(((Number) generated.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    private void upsert(List<Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                Item item = rows.get(i).item();
+                statement.setLong(1, item.getItemId());
+                statement.setString(2, item.getItemname());
+                statement.setString(3, item.getItemdescription());
+                statement.setDouble(4, item.getItemvalue());
+                statement.setString(5, item.getItemimage());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+
+/**
+ * Published for every invoice the purchase path writes; transactional listeners see it
+ * only once the invoice has been committed.
+ */
+public record PurchaseCommittedEvent(Invoice invoice) {
+}
@@ -0,0 +1,17 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.IdempotencyKey;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+
+import java.util.List;
+
+/**
+ * One basket to be turned into an invoice: the buyer, the requested lines and, for a request
+ * with an Idempotency-Key, the key row to insert with the invoice.
+ */
+public record PurchaseRequest(Long userId, List<InvoiceItem> items, IdempotencyKey idempotencyKey) {
+
+    public PurchaseRequest(Long userId, List<InvoiceItem> items) {
+        this(userId, items, null);
+    }
+}
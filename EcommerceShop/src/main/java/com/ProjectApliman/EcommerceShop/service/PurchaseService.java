@@ -0,0 +1,165 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.inventory.StockLedger;
+import com.ProjectApliman.EcommerceShop.model.*;
+import com.ProjectApliman.EcommerceShop.repository.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class PurchaseService {
+
+    /** Result of one purchase in a batch: the invoice, or why that basket was refused. */
+    public record PurchaseOutcome(Invoice invoice, RuntimeException error) {
+    }
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ItemCatalog itemCatalog;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public Invoice purchase(Long userId, List<InvoiceItem> purchasedItems) {
+        return purchase(userId, purchasedItems, null);
+    }
+
+    /**
+     * Creates the invoice; an idempotency key, when given, is inserted in the same transaction,
+     * so a key exists exactly when its invoice does.
+     */
+    @Transactional
+    public Invoice purchase(Long userId, List<InvoiceItem> purchasedItems, IdempotencyKey idempotencyKey) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        // Load every referenced item at once (a single IN query at most) instead of one findById per line
+        Set<Long> itemIds = new HashSet<>();
+        collectItemIds(purchasedItems, itemIds);
+        Map<Long, Item> catalog = itemCatalog.findForCheckout(itemIds);
+
+        Invoice invoice = newInvoice(user, purchasedItems, catalog);
+        // Units go back to stock if the transaction rolls back
+        stockLedger.reserve(quantities(purchasedItems));
+
+        // Header and lines are inserted together at commit; the lines cascade from the invoice
+        Invoice saved = invoiceRepository.save(invoice);
+        if (idempotencyKey != null) {
+            idempotencyKey.setInvoiceId(saved.getId());
+            idempotencyKeyRepository.save(idempotencyKey);
+        }
+        eventPublisher.publishEvent(new PurchaseCommittedEvent(saved));
+        return saved;
+    }
+
+    /**
+     * Writes the invoices of many baskets in one transaction, loading their users and items with
+     * one query each. A basket that cannot be priced fails on its own without affecting the others;
+     * a database failure rolls back the whole batch.
+     */
+    @Transactional
+    public List<PurchaseOutcome> purchaseBatch(List<PurchaseRequest> requests) {
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> itemIds = new HashSet<>();
+        for (PurchaseRequest request : requests) {
+            userIds.add(request.userId());
+            collectItemIds(request.items(), itemIds);
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds)) {
+            users.put(user.getId(), user);
+        }
+        Map<Long, Item> catalog = itemCatalog.findForCheckout(itemIds);
+
+        List<PurchaseOutcome> outcomes = new ArrayList<>(requests.size());
+        List<Invoice> invoices = new ArrayList<>(requests.size());
+        Map<Invoice, IdempotencyKey> idempotencyKeys = new IdentityHashMap<>();
+        for (PurchaseRequest request : requests) {
+            User user = users.get(request.userId());
+            if (user == null) {
+                outcomes.add(new PurchaseOutcome(null, new RuntimeException("User not found")));
+                continue;
+            }
+            try {
+                Invoice invoice = newInvoice(user, request.items(), catalog);
+                stockLedger.reserve(quantities(request.items()));
+                invoices.add(invoice);
+                if (request.idempotencyKey() != null) {
+                    idempotencyKeys.put(invoice, request.idempotencyKey());
+                }
+                outcomes.add(new PurchaseOutcome(invoice, null));
+            } catch (RuntimeException e) {
+                outcomes.add(new PurchaseOutcome(null, e));
+            }
+        }
+
+        invoiceRepository.saveAll(invoices);
+        idempotencyKeys.forEach((invoice, key) -> key.setInvoiceId(invoice.getId()));
+        idempotencyKeyRepository.saveAll(idempotencyKeys.values());
+        for (Invoice invoice : invoices) {
+            eventPublisher.publishEvent(new PurchaseCommittedEvent(invoice));
+        }
+        return outcomes;
+    }
+
+    // Prices the basket against already loaded items and links every line to the invoice
+    public static double priceBasket(Invoice invoice, List<InvoiceItem> purchasedItems, Map<Long, Item> catalog) {
+        double totalAmount = 0.0;
+        for (InvoiceItem invoiceItem : purchasedItems) {
+            Item item = catalog.get(invoiceItem.getItem().getItemId());
+            if (item == null) {
+                throw new RuntimeException("Item not found");
+            }
+            invoiceItem.setItem(item);
+            invoiceItem.setInvoice(invoice);
+            invoiceItem.setPrice(item.getItemvalue() * invoiceItem.getQuantity());
+            totalAmount += invoiceItem.getPrice();
+        }
+        return totalAmount;
+    }
+
+    private static Invoice newInvoice(User user, List<InvoiceItem> purchasedItems, Map<Long, Item> catalog) {
+        Invoice invoice = new Invoice();
+        invoice.setUser(user);
+        invoice.setTotalAmount(priceBasket(invoice, purchasedItems, catalog));
+        invoice.setItems(purchasedItems);
+        return invoice;
+    }
+
+    // Units per item; a basket may list the same item on several lines
+    private static Map<Long, Long> quantities(List<InvoiceItem> purchasedItems) {
+        Map<Long, Long> quantities = new HashMap<>();
+        for (InvoiceItem invoiceItem : purchasedItems) {
+            quantities.merge(invoiceItem.getItem().getItemId(), (long) invoiceItem.getQuantity(), Long::sum);
+        }
+        return quantities;
+    }
+
+    private static void collectItemIds(List<InvoiceItem> purchasedItems, Set<Long> itemIds) {
+        for (InvoiceItem invoiceItem : purchasedItems) {
+            itemIds.add(invoiceItem.getItem().getItemId());
+        }
+    }
+}
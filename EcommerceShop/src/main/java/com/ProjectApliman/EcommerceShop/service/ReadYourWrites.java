@@ -0,0 +1,58 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Sends a user's reads to the primary for a short window after that user wrote something, so
+ * replica lag never hides their own new invoice or profile change. Reads of everyone else keep
+ * using the replica.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final boolean enabled;
+    private final Cache<Long, Boolean> recentWriters;
+    // A read-write transaction makes the routing DataSource pick the primary
+    private final TransactionTemplate primaryRead;
+    private final Counter primaryReads;
+
+    public ReadYourWrites(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                          @Value("${shop.datasource.replica.url:}") String replicaUrl,
+                          @Value("${shop.datasource.read-your-writes-window:5s}") Duration window) {
+        this.enabled = !replicaUrl.isEmpty() && !window.isZero();
+        this.recentWriters = Caffeine.newBuilder().expireAfterWrite(window).build();
+        this.primaryRead = new TransactionTemplate(transactionManager);
+        this.primaryReads = meterRegistry.counter("read_your_writes_primary_reads_total");
+    }
+
+    @TransactionalEventListener
+    public void onPurchaseCommitted(PurchaseCommittedEvent event) {
+        wrote(event.invoice().getUser().getId());
+    }
+
+    public void wrote(long userId) {
+        if (enabled) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+
+    /** Runs the read on the primary when the user wrote within the window, else where it would normally go. */
+    public <T> T forUser(long userId, Supplier<T> read) {
+        if (!enabled || recentWriters.getIfPresent(userId) == null) {
+            return read.get();
+        }
+        primaryReads.increment();
+        return primaryRead.execute(status -> read.get());
+    }
+}
@@ -0,0 +1,70 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters behind the weak ETags of the item and user endpoints. Every write bumps its
+ * collection's counter and stamps the written entity with the new value, after the write is
+ * stored. Readers take the tag before reading, so a tag is never newer than the data sent with it.
+ * <p>
+ * Tags embed the process start time: counters restart with the process, so tags handed out by an
+ * earlier run (or another instance) simply miss. Like the catalog cache, only writes made through
+ * this process are seen.
+ */
+@Component
+public class ResourceVersions {
+
+    public enum Resource {
+        ITEMS("items"),
+        USERS("users");
+
+        private final String prefix;
+
+        Resource(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Resource, AtomicLong> collections = new EnumMap<>(Resource.class);
+    // Bumped by bulk writes, which invalidate every entity tag of the collection at once
+    private final Map<Resource, AtomicLong> generations = new EnumMap<>(Resource.class);
+    // Version of the last write to each entity; entities not written since startup are at 0
+    private final Map<Resource, Map<Long, Long>> entities = new EnumMap<>(Resource.class);
+
+    public ResourceVersions() {
+        for (Resource resource : Resource.values()) {
+            collections.put(resource, new AtomicLong());
+            generations.put(resource, new AtomicLong());
+            entities.put(resource, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void bump(Resource resource, Long id) {
+        long version = collections.get(resource).incrementAndGet();
+        entities.get(resource).put(id, version);
+    }
+
+    /** Changes the tag of the collection and of every entity in it, without tracking each entity. */
+    public void bumpAll(Resource resource) {
+        generations.get(resource).incrementAndGet();
+        entities.get(resource).clear();
+        collections.get(resource).incrementAndGet();
+    }
+
+    /** Weak ETag of the whole collection. */
+    public String tag(Resource resource) {
+        return "W/\"" + resource.prefix + "-" + epoch + "-" + collections.get(resource).get() + "\"";
+    }
+
+    /** Weak ETag of a single entity. */
+    public String tag(Resource resource, Long id) {
+        return "W/\"" + resource.prefix + "-" + id + "-" + epoch + "-" + generations.get(resource).get()
+                + "-" + entities.get(resource).getOrDefault(id, 0L) + "\"";
+    }
+}
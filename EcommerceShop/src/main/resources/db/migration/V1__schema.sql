@@ -0,0 +1,45 @@
+-- Schema as ddl-auto=update created it; existing databases are baselined at version 1.
+-- Id sequences differ per database and live in db/vendor/{vendor}.
+
+CREATE TABLE user (
+    id       BIGINT NOT NULL,
+    username VARCHAR(255),
+    name     VARCHAR(255),
+    email    VARCHAR(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE item (
+    item_id         BIGINT NOT NULL AUTO_INCREMENT,
+    itemname        VARCHAR(255),
+    itemdescription VARCHAR(255),
+    itemvalue       DOUBLE NOT NULL,
+    itemimage       VARCHAR(255),
+    PRIMARY KEY (item_id)
+);
+
+CREATE TABLE item_stock (
+    item_id   BIGINT NOT NULL,
+    available BIGINT NOT NULL,
+    PRIMARY KEY (item_id)
+);
+
+CREATE TABLE invoice (
+    id            BIGINT NOT NULL,
+    user_id       BIGINT NOT NULL,
+    total_amount  DOUBLE NOT NULL,
+    purchase_date DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT fk_invoice_user FOREIGN KEY (user_id) REFERENCES user (id)
+);
+
+CREATE TABLE invoice_item (
+    id         BIGINT NOT NULL,
+    invoice_id BIGINT NOT NULL,
+    item_id    BIGINT NOT NULL,
+    quantity   INT    NOT NULL,
+    price      DOUBLE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_invoice_item_invoice FOREIGN KEY (invoice_id) REFERENCES invoice (id),
+    CONSTRAINT fk_invoice_item_item FOREIGN KEY (item_id) REFERENCES item (item_id)
+);
@@ -0,0 +1,12 @@
+-- findByCustomerId / findByCustomerIdIn, newest-first per customer; also serves the user foreign key
+CREATE INDEX idx_invoice_user_date ON invoice (user_id, purchase_date);
+
+-- Date-range reads: the invoice export and per-day totals
+CREATE INDEX idx_invoice_purchase_date ON invoice (purchase_date);
+
+-- Exact and prefix name lookups (UserRepository.name, the search index loaders order by id instead)
+CREATE INDEX idx_user_name ON user (name);
+CREATE INDEX idx_item_itemname ON item (itemname);
+
+-- Per-item sales totals read only the index, never the rows
+CREATE INDEX idx_invoice_item_item_totals ON invoice_item (item_id, quantity, price);
@@ -0,0 +1,13 @@
+-- Purchases already made per Idempotency-Key, so retries are answered after a restart too.
+-- No foreign key to invoice: keys are purged on their own schedule.
+CREATE TABLE idempotency_key (
+    idempotency_key VARCHAR(255) NOT NULL,
+    user_id         BIGINT       NOT NULL,
+    request_hash    VARCHAR(64)  NOT NULL,
+    invoice_id      BIGINT       NOT NULL,
+    created_at      DATETIME(6)  NOT NULL,
+    PRIMARY KEY (idempotency_key)
+);
+
+-- Retention purge
+CREATE INDEX idx_idempotency_key_created_at ON idempotency_key (created_at);
@@ -0,0 +1,24 @@
+-- Cold store for invoices older than the hot window (shop.invoice.hot-months), filled by the
+-- archival job. Lines carry plain ids instead of foreign keys: users and items may change or go
+-- away while their archived purchases stay.
+CREATE TABLE invoice_archive (
+    id            BIGINT      NOT NULL,
+    user_id       BIGINT      NOT NULL,
+    total_amount  DOUBLE      NOT NULL,
+    purchase_date DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE invoice_item_archive (
+    id         BIGINT NOT NULL,
+    invoice_id BIGINT NOT NULL,
+    item_id    BIGINT NOT NULL,
+    quantity   INT    NOT NULL,
+    price      DOUBLE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Customer history and the export of archived date ranges; lines are only read by invoice
+CREATE INDEX idx_invoice_archive_user_date ON invoice_archive (user_id, purchase_date);
+CREATE INDEX idx_invoice_archive_purchase_date ON invoice_archive (purchase_date);
+CREATE INDEX idx_invoice_item_archive_invoice ON invoice_item_archive (invoice_id);
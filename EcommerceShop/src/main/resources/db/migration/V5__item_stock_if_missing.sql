@@ -0,0 +1,7 @@
+-- Databases baselined at version 1 skipped V1__schema.sql; item_stock is only there if ddl-auto=update
+-- created it from ItemStock, so create it for those that never ran with stock tracking
+CREATE TABLE IF NOT EXISTS item_stock (
+    item_id   BIGINT NOT NULL,
+    available BIGINT NOT NULL,
+    PRIMARY KEY (item_id)
+);
@@ -0,0 +1,12 @@
+-- Units sold, appended by each purchase transaction and folded into item_stock by StockLedger's
+-- flush, one decrement per item. Purchases insert rows of their own, so buyers of a hot item
+-- never wait on the item_stock row lock.
+CREATE TABLE item_stock_journal (
+    id       BIGINT NOT NULL AUTO_INCREMENT,
+    item_id  BIGINT NOT NULL,
+    quantity BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Journal rows of one item, dropped when its count is set or it stops being tracked
+CREATE INDEX idx_item_stock_journal_item ON item_stock_journal (item_id);
@@ -0,0 +1,125 @@
+package com.ProjectApliman.EcommerceShop.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Each client may send two writes at once and one a second after that; at most one write is in
+ * flight across all clients. GET /items is on a guarded path too, and passes regardless. Tests use their own client addresses so their buckets do not meet.
+ */
+@SpringBootTest(properties = {
+        "shop.admission.paths=/admission-test/**,/items",
+        "shop.admission.client-rate=1",
+        "shop.admission.client-burst=2",
+        "shop.admission.initial-limit=1",
+        "shop.admission.min-limit=1",
+        "shop.admission.max-limit=1"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(AdmissionFilterTests.HeldEndpoint.class)
+class AdmissionFilterTests {
+
+    @RestController
+    static class HeldEndpoint {
+
+        static volatile CountDownLatch entered = new CountDownLatch(0);
+        static volatile CountDownLatch release = new CountDownLatch(0);
+
+        @PostMapping("/admission-test/held")
+        void held() throws InterruptedException {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void clientOverItsRateGets429WhileReadsPass() throws Exception {
+        mockMvc.perform(post("/admission-test/held").with(client("10.0.0.1"))).andExpect(status().isOk());
+        mockMvc.perform(post("/admission-test/held").with(client("10.0.0.1"))).andExpect(status().isOk());
+
+        mockMvc.perform(post("/admission-test/held").with(client("10.0.0.1")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        mockMvc.perform(get("/items").with(client("10.0.0.1"))).andExpect(status().isOk());
+        // Other clients have their own budget
+        mockMvc.perform(post("/admission-test/held").with(client("10.0.0.2"))).andExpect(status().isOk());
+    }
+
+    @Test
+    void writesOverTheConcurrencyLimitGet503WhileReadsPass() throws Exception {
+        HeldEndpoint.entered = new CountDownLatch(1);
+        HeldEndpoint.release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(post("/admission-test/held").with(client("10.0.1.1")))
+                        .andReturn().getResponse().getStatus();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            assertThat(HeldEndpoint.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+            mockMvc.perform(post("/admission-test/held").with(client("10.0.1.2")))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+            mockMvc.perform(get("/items").with(client("10.0.1.2"))).andExpect(status().isOk());
+        } finally {
+            HeldEndpoint.release.countDown();
+        }
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(200);
+        mockMvc.perform(post("/admission-test/held").with(client("10.0.1.2"))).andExpect(status().isOk());
+    }
+
+    @Test
+    void failedRequestCutsTheLimit() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdmissionFilter filter = new AdmissionFilter(meterRegistry, true, List.of("/user/**"), "",
+                20, 40, 100, 8, 1, 16, 0.5, Duration.ofSeconds(10));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/user/1");
+
+        // Still 200 when the exception passes the filter; the error page comes later
+        assertThatThrownBy(() -> filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            throw new ServletException("failed");
+        })).isInstanceOf(ServletException.class);
+
+        assertThat(meterRegistry.get("admission_concurrency_limit").gauge().value()).isEqualTo(4);
+        assertThat(meterRegistry.get("admission_in_flight").gauge().value()).isZero();
+    }
+
+    private static RequestPostProcessor client(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.ProjectApliman.EcommerceShop.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AimdConcurrencyLimitTests {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FAST = THRESHOLD / 10;
+    private static final long SLOW = THRESHOLD * 2;
+
+    @Test
+    void admitsUpToTheLimit() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(2, 1, 10, 0.5, THRESHOLD);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+        assertThat(limit.inFlight()).isEqualTo(2);
+
+        limit.release(FAST, false);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void fastRequestsAtTheLimitRaiseItByAboutOnePerLimit() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(4, 1, 10, 0.5, THRESHOLD);
+
+        // 4 -> 4.25 -> 4.49 -> 4.71: releases with at least half the limit in flight add 1/limit each
+        fillAndReleaseFast(limit);
+        assertThat(limit.limit()).isEqualTo(4);
+        fillAndReleaseFast(limit);
+        assertThat(limit.limit()).isEqualTo(5);
+    }
+
+    @Test
+    void limitDoesNotGrowWhileMostlyIdle() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(4, 1, 10, 0.5, THRESHOLD);
+
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(FAST, false);
+        }
+        assertThat(limit.limit()).isEqualTo(4);
+    }
+
+    @Test
+    void slowOrOverloadedRequestsCutTheLimitByTheBackoff() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(10, 2, 10, 0.5, THRESHOLD);
+
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertThat(limit.limit()).isEqualTo(5);
+
+        limit.tryAcquire();
+        limit.release(FAST, true);
+        assertThat(limit.limit()).isEqualTo(2);
+
+        // Never below the minimum
+        limit.tryAcquire();
+        limit.release(SLOW, false);
+        assertThat(limit.limit()).isEqualTo(2);
+        assertThat(limit.inFlight()).isZero();
+    }
+
+    @Test
+    void limitStopsAtTheMaximum() {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(4, 1, 6, 0.5, THRESHOLD);
+
+        for (int i = 0; i < 100; i++) {
+            fillAndReleaseFast(limit);
+        }
+        assertThat(limit.limit()).isEqualTo(6);
+    }
+
+    @Test
+    void boundsAreChecked() {
+        assertThatThrownBy(() -> new AimdConcurrencyLimit(4, 0, 10, 0.5, THRESHOLD)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AimdConcurrencyLimit(4, 5, 4, 0.5, THRESHOLD)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AimdConcurrencyLimit(4, 1, 10, 1, THRESHOLD)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void fillAndReleaseFast(AimdConcurrencyLimit limit) {
+        int acquired = 0;
+        while (limit.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limit.release(FAST, false);
+        }
+    }
+}
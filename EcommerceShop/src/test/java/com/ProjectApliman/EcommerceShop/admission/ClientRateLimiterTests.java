@@ -0,0 +1,73 @@
+package com.ProjectApliman.EcommerceShop.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClientRateLimiterTests {
+
+    // 10 per second: one token every 100 ms, three at once
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+    private final ClientRateLimiter limiter = new ClientRateLimiter(10, 3, 100, clock::get);
+
+    @Test
+    void burstIsAdmittedAtOnceThenTheNextWaitsOneInterval() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("a")).isZero();
+        }
+        assertThat(limiter.tryAcquire("a")).isEqualTo(INTERVAL);
+
+        clock.addAndGet(INTERVAL / 4);
+        assertThat(limiter.tryAcquire("a")).isEqualTo(INTERVAL * 3 / 4);
+    }
+
+    @Test
+    void tokensRefillAtTheRate() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a");
+        }
+
+        clock.addAndGet(INTERVAL);
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isEqualTo(INTERVAL);
+
+        clock.addAndGet(2 * INTERVAL);
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void idleBucketRefillsToTheBurstAndNoFurther() {
+        limiter.tryAcquire("a");
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("a")).isZero();
+        }
+        assertThat(limiter.tryAcquire("a")).isPositive();
+    }
+
+    @Test
+    void clientsHaveTheirOwnBuckets() {
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a");
+        }
+
+        assertThat(limiter.tryAcquire("a")).isPositive();
+        assertThat(limiter.tryAcquire("b")).isZero();
+        assertThat(limiter.clients()).isEqualTo(2);
+    }
+
+    @Test
+    void rateAndBurstMustBePositive() {
+        assertThatThrownBy(() -> new ClientRateLimiter(0, 3, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ClientRateLimiter(10, 0, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,181 @@
+package com.ProjectApliman.EcommerceShop.archive;
+
+import com.ProjectApliman.EcommerceShop.analytics.SalesRollups;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceArchiveRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.ProjectApliman.EcommerceShop.service.InvoiceExporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Customer 1 has three invoices from before the hot window and two inside it, customer 2 one of
+ * each. A chunk size of 2 makes the archival job take several chunks to move the four old ones.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:archive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "shop.invoice.hot-months=12",
+        "shop.invoice.archive.chunk-size=2",
+        // The test runs the job itself
+        "shop.invoice.archive.cron=-",
+        "shop.invoice.partitions.cron=-"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class InvoiceArchiveTests {
+
+    private static final LocalDateTime OLD = LocalDateTime.now().minusMonths(20);
+    private static final LocalDateTime RECENT = LocalDateTime.now().minusDays(1);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private InvoiceArchiver invoiceArchiver;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Autowired
+    private InvoiceArchiveRepository invoiceArchiveRepository;
+
+    @Autowired
+    private InvoiceExporter invoiceExporter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        for (String table : List.of("invoice_item_archive", "invoice_archive", "invoice_item", "invoice", "item", "user")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+        jdbcTemplate.update("INSERT INTO user (id, username, name, email) VALUES (1, 'first', 'First', NULL), (2, 'second', 'Second', NULL)");
+        jdbcTemplate.update("INSERT INTO item (item_id, itemname, itemvalue) VALUES (1, 'Kept', 2.5), (2, 'Also kept', 4.0)");
+        invoice(101, 1, OLD);
+        invoice(102, 1, OLD.plusDays(1));
+        invoice(103, 2, OLD.plusDays(1));
+        invoice(104, 1, OLD.plusMonths(1));
+        invoice(105, 1, RECENT);
+        invoice(106, 2, RECENT);
+        invoice(107, 1, RECENT);
+    }
+
+    // Two lines per invoice: one of item 1 and (id % 3) + 1 of item 2
+    private void invoice(long id, long userId, LocalDateTime purchased) {
+        int quantity = (int) (id % 3) + 1;
+        jdbcTemplate.update("INSERT INTO invoice (id, user_id, total_amount, purchase_date) VALUES (?, ?, ?, ?)",
+                id, userId, 2.5 + quantity * 4.0, Timestamp.valueOf(purchased));
+        jdbcTemplate.update("INSERT INTO invoice_item (id, invoice_id, item_id, quantity, price) VALUES (?, ?, 1, 1, 2.5)",
+                id * 10, id);
+        jdbcTemplate.update("INSERT INTO invoice_item (id, invoice_id, item_id, quantity, price) VALUES (?, ?, 2, ?, ?)",
+                id * 10 + 1, id, quantity, quantity * 4.0);
+    }
+
+    @Test
+    void everyInvoiceIsInExactlyOneStore() {
+        assertThat(invoiceArchiver.archive()).isEqualTo(4);
+
+        assertThat(ids("SELECT id FROM invoice")).containsExactly(105L, 106L, 107L);
+        assertThat(ids("SELECT id FROM invoice_archive")).containsExactly(101L, 102L, 103L, 104L);
+        assertThat(ids("SELECT id FROM invoice_item UNION ALL SELECT id FROM invoice_item_archive"))
+                .containsExactly(1010L, 1011L, 1020L, 1021L, 1030L, 1031L, 1040L, 1041L,
+                        1050L, 1051L, 1060L, 1061L, 1070L, 1071L);
+        assertThat(ids("SELECT invoice_id FROM invoice_item_archive")).containsOnly(101L, 102L, 103L, 104L);
+
+        // Nothing left to move
+        assertThat(invoiceArchiver.archive()).isZero();
+    }
+
+    @Test
+    void historyMergesBothStores() throws Exception {
+        invoiceArchiver.archive();
+
+        mockMvc.perform(get("/invoice/searchbyID/{customerId}", 1).param("history", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains(101, 102, 104, 105, 107)))
+                .andExpect(jsonPath("$[0].user.name").value("First"))
+                .andExpect(jsonPath("$[0].totalAmount").value(14.5))
+                .andExpect(jsonPath("$[0].items[*].item.itemname").value(containsInAnyOrder("Kept", "Also kept")));
+        mockMvc.perform(get("/invoice/searchbyID/{customerId}", 2).param("history", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains(103, 106)));
+        // Without history only the hot window
+        mockMvc.perform(get("/invoice/searchbyID/{customerId}", 1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(contains(105, 107)));
+    }
+
+    @Test
+    void salesRollupsAreUnchanged() {
+        SalesRollups before = rebuiltRollups();
+        invoiceArchiver.archive();
+        SalesRollups after = rebuiltRollups();
+
+        assertThat(after.summary()).isEqualTo(before.summary());
+        assertThat(before.summary().invoices()).isEqualTo(7);
+        for (long id : new long[]{1, 2}) {
+            assertThat(after.user(id)).isEqualTo(before.user(id));
+            assertThat(after.item(id)).isEqualTo(before.item(id));
+        }
+        for (LocalDateTime purchased : List.of(OLD, OLD.plusDays(1), OLD.plusMonths(1), RECENT)) {
+            LocalDate day = purchased.toLocalDate();
+            assertThat(after.day(day)).isEqualTo(before.day(day));
+        }
+    }
+
+    @Test
+    void exportReadsTheArchiveThenTheHotTableIncludingInvoicesWithoutLines() {
+        jdbcTemplate.update("INSERT INTO invoice (id, user_id, total_amount, purchase_date) VALUES (100, 2, 0, ?), (108, 2, 0, ?)",
+                Timestamp.valueOf(OLD.minusDays(1)), Timestamp.valueOf(RECENT));
+        invoiceArchiver.archive();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = invoiceExporter.export(OLD.toLocalDate().minusDays(2), RECENT.toLocalDate(), InvoiceExporter.Format.CSV, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().skip(1).toList();
+        assertThat(rows).isEqualTo(16).isEqualTo(lines.size());
+        assertThat(lines.stream().map(line -> line.substring(0, line.indexOf(','))).distinct())
+                .containsExactly("100", "101", "102", "103", "104", "105", "106", "107", "108");
+        assertThat(lines.get(0)).startsWith("100,").endsWith(",Second,0.0,,,,,");
+        assertThat(lines.get(1)).startsWith("101,").endsWith(",First,14.5,1010,1,Kept,1,2.5");
+        assertThat(lines.get(15)).startsWith("108,").endsWith(",Second,0.0,,,,,");
+    }
+
+    // Totals as a restart would load them from the database
+    private SalesRollups rebuiltRollups() {
+        SalesRollups rollups = new SalesRollups(invoiceRepository, invoiceItemRepository, invoiceArchiveRepository, transactionManager);
+        rollups.afterSingletonsInstantiated();
+        return rollups;
+    }
+
+    private List<Long> ids(String sql) {
+        return jdbcTemplate.queryForList(sql + " ORDER BY 1", Long.class);
+    }
+}
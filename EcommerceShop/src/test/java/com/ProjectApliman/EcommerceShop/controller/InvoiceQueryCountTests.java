@@ -0,0 +1,133 @@
+package com.ProjectApliman.EcommerceShop.controller;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.User;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.UserRepository;
+import com.ProjectApliman.EcommerceShop.search.SearchIndexes;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class InvoiceQueryCountTests {
+
+    // No invoice endpoint may need more statements than this, however many invoices and lines it returns
+    private static final long MAX_STATEMENTS = 3;
+
+    private static final int USERS = 3;
+    private static final int INVOICES_PER_USER = 10;
+    private static final int LINES_PER_INVOICE = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private SearchIndexes searchIndexes;
+
+    private Statistics statistics;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User customer = userRepository.findByNameContaining("Query Customer").stream().findFirst()
+                .orElseGet(this::seed);
+        customerId = customer.getId();
+    }
+
+    @Test
+    void allInvoices() throws Exception {
+        assertStatementsWithinLimit(get("/invoice/all"));
+    }
+
+    @Test
+    void invoicePage() throws Exception {
+        assertStatementsWithinLimit(get("/invoice/all").param("limit", "7"));
+    }
+
+    @Test
+    void invoicesByCustomerId() throws Exception {
+        assertStatementsWithinLimit(get("/invoice/searchbyID/{customerId}", customerId));
+    }
+
+    @Test
+    void invoicesByCustomerName() throws Exception {
+        assertStatementsWithinLimit(get("/invoice/search/{customerName}", "query customer"));
+    }
+
+    private void assertStatementsWithinLimit(MockHttpServletRequestBuilder request) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(MAX_STATEMENTS);
+    }
+
+    private User seed() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < LINES_PER_INVOICE; i++) {
+            Item item = new Item();
+            item.setItemname("Query item " + i);
+            item.setItemvalue(10 + i);
+            items.add(itemRepository.save(item));
+        }
+        User first = null;
+        for (int u = 0; u < USERS; u++) {
+            User user = new User();
+            user.setUsername("query" + u);
+            user.setName("Query Customer " + u);
+            user = userRepository.save(user);
+            if (first == null) {
+                first = user;
+            }
+            for (int n = 0; n < INVOICES_PER_USER; n++) {
+                Invoice invoice = new Invoice();
+                invoice.setUser(user);
+                List<InvoiceItem> lines = new ArrayList<>();
+                for (Item item : items) {
+                    InvoiceItem line = new InvoiceItem();
+                    line.setInvoice(invoice);
+                    line.setItem(item);
+                    line.setQuantity(2);
+                    line.setPrice(item.getItemvalue() * 2);
+                    lines.add(line);
+                }
+                invoice.setItems(lines);
+                invoiceRepository.save(invoice);
+            }
+        }
+        searchIndexes.rebuild();
+        return first;
+    }
+}
@@ -0,0 +1,143 @@
+package com.ProjectApliman.EcommerceShop.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two embedded databases stand in for primary and replica. They are never synchronised, so
+ * where a row is found shows which one a request used.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "shop.datasource.replica.url=jdbc:h2:mem:routing_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "shop.datasource.replica.username=sa",
+        "shop.datasource.read-your-writes-window=1m",
+        // The index would be built from the replica before the test has given it a schema
+        "shop.search.mode=LIKE"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadReplicaRoutingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        Integer tables = replica.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = 'item'", Integer.class);
+        if (tables == 0) {
+            // Same schema as the primary, no data
+            for (String statement : primary.queryForList("SCRIPT NODATA NOSETTINGS", String.class)) {
+                replica.execute(statement);
+            }
+        }
+        for (JdbcTemplate database : new JdbcTemplate[]{primary, replica}) {
+            database.update("DELETE FROM invoice_item");
+            database.update("DELETE FROM invoice");
+            database.update("DELETE FROM item");
+            database.update("DELETE FROM user");
+        }
+    }
+
+    @Test
+    void readsUseTheReplica() throws Exception {
+        replica.update("INSERT INTO user (id, username, name, email) VALUES (1000, 'replica', 'Replica Only', NULL)");
+
+        mockMvc.perform(get("/user/{id}", 1000))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Replica Only"));
+    }
+
+    @Test
+    void writesUseThePrimary() throws Exception {
+        mockMvc.perform(post("/item")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"itemname\":\"Written\",\"itemvalue\":5}"))
+                .andExpect(status().isOk());
+
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM item WHERE itemname = 'Written'", Integer.class)).isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM item WHERE itemname = 'Written'", Integer.class)).isZero();
+    }
+
+    @Test
+    void updateReadsAndWritesThePrimary() throws Exception {
+        primary.update("INSERT INTO user (id, username, name, email) VALUES (1001, 'updated', 'Before', NULL)");
+        replica.update("INSERT INTO user (id, username, name, email) VALUES (1001, 'updated', 'Before', NULL)");
+
+        mockMvc.perform(put("/user/{id}", 1001)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"updated\",\"name\":\"After\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("After"));
+
+        assertThat(primary.queryForObject("SELECT name FROM user WHERE id = 1001", String.class)).isEqualTo("After");
+        assertThat(replica.queryForObject("SELECT name FROM user WHERE id = 1001", String.class)).isEqualTo("Before");
+    }
+
+    @Test
+    void updateOfARowOnlyOnTheReplicaIsNotFound() throws Exception {
+        // The read of the read-modify-write does not see the replica either
+        replica.update("INSERT INTO user (id, username, name, email) VALUES (1002, 'lagging', 'Replica Only', NULL)");
+
+        mockMvc.perform(put("/user/{id}", 1002)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"lagging\",\"name\":\"After\"}"))
+                .andExpect(status().isNotFound());
+
+        assertThat(replica.queryForObject("SELECT name FROM user WHERE id = 1002", String.class)).isEqualTo("Replica Only");
+    }
+
+    @Test
+    void buyerReadsTheirOwnInvoiceFromThePrimary() throws Exception {
+        for (JdbcTemplate database : new JdbcTemplate[]{primary, replica}) {
+            database.update("INSERT INTO user (id, username, name, email) VALUES (2000, 'buyer', 'Buyer', NULL)");
+            database.update("INSERT INTO user (id, username, name, email) VALUES (2001, 'other', 'Other', NULL)");
+            database.update("INSERT INTO item (item_id, itemname, itemvalue) VALUES (3000, 'Routed item', 12.5)");
+        }
+
+        mockMvc.perform(post("/invoice/purchase/{userId}", 2000)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"item\":{\"itemId\":3000},\"quantity\":2}]"))
+                .andExpect(status().isOk());
+        // An invoice the other user did not just create is only on the primary as well
+        primary.update("INSERT INTO invoice (id, user_id, total_amount, purchase_date) VALUES (-1, 2001, 1.0, CURRENT_TIMESTAMP)");
+
+        mockMvc.perform(get("/invoice/searchbyID/{customerId}", 2000))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/invoice/searchbyID/{customerId}", 2001))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.ProjectApliman.EcommerceShop.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test: /items reads must keep their throughput while more slow sign-ups (5 s each in
+ * UserController.newUser) are in flight than Tomcat has platform worker threads.
+ * Run with {@code mvn test -Dgroups=load -DexcludedGroups=}.
+ */
+@Tag("load")
+// Admission control would shed most of the slow sign-ups; this measures the threads behind them
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "shop.admission.enabled=false")
+@ActiveProfiles("test")
+class ReadThroughputUnderSlowWritesTests {
+
+    // Tomcat's default platform pool has 200 workers
+    private static final int SLOW_WRITES = 400;
+    private static final int READERS = 8;
+    private static final Duration WINDOW = Duration.ofSeconds(3);
+
+    @LocalServerPort
+    private int port;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client = HttpClient.newBuilder().executor(executor).build();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void readThroughputHoldsWhileSlowSignUpsAreInFlight() throws Exception {
+        double baseline = readsPerSecond();
+
+        List<CompletableFuture<HttpResponse<Void>>> signUps = new ArrayList<>();
+        for (int i = 0; i < SLOW_WRITES; i++) {
+            String body = "{\"username\":\"load" + i + "\",\"name\":\"Load User " + i + "\",\"email\":\"load" + i + "@shop.test\"}";
+            signUps.add(client.sendAsync(HttpRequest.newBuilder(uri("/user"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.discarding()));
+        }
+        // Give the sign-ups time to reach the handler and start sleeping
+        Thread.sleep(500);
+        double underLoad = readsPerSecond();
+
+        CompletableFuture.allOf(signUps.toArray(CompletableFuture[]::new)).join();
+        for (CompletableFuture<HttpResponse<Void>> signUp : signUps) {
+            assertThat(signUp.get().statusCode()).isEqualTo(200);
+        }
+        assertThat(underLoad)
+                .as("/items reads per second: %.0f idle, %.0f with %d slow sign-ups in flight",
+                        baseline, underLoad, SLOW_WRITES)
+                .isGreaterThan(baseline * 0.5);
+    }
+
+    private double readsPerSecond() throws Exception {
+        AtomicLong completed = new AtomicLong();
+        long deadline = System.nanoTime() + WINDOW.toNanos();
+        HttpRequest read = HttpRequest.newBuilder(uri("/items?limit=20")).GET().build();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    if (client.send(read, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        completed.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        return completed.get() / (WINDOW.toMillis() / 1000.0);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,178 @@
+package com.ProjectApliman.EcommerceShop.inventory;
+
+import com.ProjectApliman.EcommerceShop.repository.ItemStockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        // The tests flush the journal themselves
+        "shop.inventory.flush-interval=1h"})
+@ActiveProfiles("test")
+class StockLedgerTests {
+
+    private static final long HOT = 1;
+    private static final long OTHER = 2;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ItemStockRepository itemStockRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        transaction = new TransactionTemplate(transactionManager);
+        stockLedger.setAvailable(HOT, 5);
+        stockLedger.setAvailable(OTHER, 3);
+    }
+
+    @Test
+    void reservedUnitsAreJournaledWithTheTransactionAndFoldedIn() {
+        transaction.executeWithoutResult(status -> {
+            stockLedger.reserve(Map.of(HOT, 2L));
+            stockLedger.reserve(Map.of(HOT, 1L, OTHER, 1L));
+            // Taken from memory right away, journaled only at commit
+            assertThat(stockLedger.available(HOT)).hasValue(2);
+            assertThat(journaled(HOT)).isZero();
+        });
+
+        // One row per item for the transaction, item_stock untouched until the flush
+        assertThat(journaled(HOT)).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item_stock_journal", Integer.class)).isEqualTo(2);
+        assertThat(stored(HOT)).isEqualTo(5);
+
+        assertThat(stockLedger.flush()).isEqualTo(4);
+        assertThat(stored(HOT)).isEqualTo(2);
+        assertThat(stored(OTHER)).isEqualTo(2);
+        assertThat(journaled(HOT)).isZero();
+    }
+
+    @Test
+    void rollbackGivesTheUnitsBack() {
+        transaction.executeWithoutResult(status -> {
+            stockLedger.reserve(Map.of(HOT, 4L));
+            status.setRollbackOnly();
+        });
+
+        assertThat(stockLedger.available(HOT)).hasValue(5);
+        assertThat(journaled(HOT)).isZero();
+        stockLedger.flush();
+        assertThat(stored(HOT)).isEqualTo(5);
+    }
+
+    @Test
+    void saleBeyondStockIsRefusedWholeBasket() {
+        assertThatThrownBy(() -> stockLedger.reserve(Map.of(HOT, 2L, OTHER, 4L)))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+
+        // Nothing of the basket is kept, in memory or in the journal
+        assertThat(stockLedger.available(HOT)).hasValue(5);
+        assertThat(stockLedger.available(OTHER)).hasValue(3);
+        assertThat(journaled(HOT)).isZero();
+
+        stockLedger.reserve(Map.of(OTHER, 3L));
+        assertThatThrownBy(() -> stockLedger.reserve(Map.of(OTHER, 1L))).isInstanceOf(ResponseStatusException.class);
+        // Untracked items are sold without limit
+        stockLedger.reserve(Map.of(99L, 1_000L));
+    }
+
+    @Test
+    void concurrentBuyersSellExactlyTheStock() throws Exception {
+        stockLedger.setAvailable(HOT, 500);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService buyers = Executors.newFixedThreadPool(16);
+        List<Future<Integer>> bought = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            bought.add(buyers.submit(() -> {
+                start.await();
+                int units = 0;
+                try {
+                    while (true) {
+                        stockLedger.reserve(Map.of(HOT, 1L));
+                        units++;
+                    }
+                } catch (ResponseStatusException e) {
+                    return units;
+                }
+            }));
+        }
+        start.countDown();
+        int sold = 0;
+        for (Future<Integer> buyer : bought) {
+            sold += buyer.get();
+        }
+        buyers.shutdown();
+
+        assertThat(sold).isEqualTo(500);
+        assertThat(stockLedger.available(HOT)).hasValue(0);
+        stockLedger.flush();
+        assertThat(stored(HOT)).isZero();
+    }
+
+    @Test
+    void restartCountsSalesNotFoldedInYet() {
+        stockLedger.reserve(Map.of(HOT, 2L));
+
+        StockLedger restarted = new StockLedger(itemStockRepository, jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), 4);
+        restarted.afterSingletonsInstantiated();
+
+        assertThat(stored(HOT)).isEqualTo(5);
+        assertThat(restarted.available(HOT)).hasValue(3);
+    }
+
+    @Test
+    void rolledBackRemovalKeepsTracking() {
+        transaction.executeWithoutResult(status -> {
+            stockLedger.remove(HOT);
+            status.setRollbackOnly();
+        });
+        assertThat(stockLedger.available(HOT)).hasValue(5);
+        assertThat(itemStockRepository.existsById(HOT)).isTrue();
+
+        stockLedger.reserve(Map.of(HOT, 1L));
+        stockLedger.remove(HOT);
+        assertThat(stockLedger.available(HOT)).isEmpty();
+        assertThat(itemStockRepository.existsById(HOT)).isFalse();
+        assertThat(journaled(HOT)).isZero();
+    }
+
+    private long stored(long itemId) {
+        return jdbcTemplate.queryForObject("SELECT available FROM item_stock WHERE item_id = ?", Long.class, itemId);
+    }
+
+    private long journaled(long itemId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM item_stock_journal WHERE item_id = ?", Long.class, itemId);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ProjectApliman.EcommerceShop.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedStockTests {
+
+    private static final int THREADS = 64;
+    private static final int ATTEMPTS_PER_THREAD = 10_000;
+
+    @Test
+    void concurrentBuyersNeverOversell() throws Exception {
+        long initial = 100_000;
+        StripedStock stock = new StripedStock(16, initial);
+        AtomicLong sold = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService buyers = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            buyers.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    long quantity = 1 + ThreadLocalRandom.current().nextInt(20);
+                    if (stock.tryTake(quantity)) {
+                        sold.addAndGet(quantity);
+                        // Some reservations roll back and return their units
+                        if (i % 10 == 0) {
+                            stock.put(quantity);
+                            sold.addAndGet(-quantity);
+                        }
+                    }
+                }
+            });
+        }
+        start.countDown();
+        buyers.shutdown();
+        assertThat(buyers.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        // Every unit is either sold or still in stock, and the count never went negative
+        assertThat(stock.available()).isGreaterThanOrEqualTo(0);
+        assertThat(sold.get() + stock.available()).isEqualTo(initial);
+        assertThat(sold.get()).isLessThanOrEqualTo(initial);
+    }
+
+    @Test
+    void reservationGathersUnitsSpreadOverStripes() {
+        StripedStock stock = new StripedStock(16, 10);
+
+        // No single stripe holds 10 units, so this has to collect them from several
+        assertThat(stock.tryTake(10)).isTrue();
+        assertThat(stock.available()).isZero();
+        assertThat(stock.tryTake(1)).isFalse();
+    }
+
+    @Test
+    void failedReservationLeavesStockUntouched() {
+        StripedStock stock = new StripedStock(4, 7);
+
+        assertThat(stock.tryTake(8)).isFalse();
+        assertThat(stock.available()).isEqualTo(7);
+    }
+}
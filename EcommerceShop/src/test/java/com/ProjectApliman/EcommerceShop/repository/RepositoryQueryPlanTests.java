@@ -0,0 +1,232 @@
+package com.ProjectApliman.EcommerceShop.repository;
+
+import com.ProjectApliman.EcommerceShop.archive.InvoicePeriods;
+import com.ProjectApliman.EcommerceShop.metrics.StatementCounter;
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.model.User;
+import com.ProjectApliman.EcommerceShop.service.InvoiceExporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.io.OutputStream;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs every repository query (and the invoice export), captures the SQL Hibernate sends through
+ * the statement inspector and fails if EXPLAIN shows a full table scan in any of them. A new query
+ * either gets an index in a migration or a place in {@link #FULL_SCANS_BY_DESIGN}.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:query_plans;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "shop.search.mode=LIKE"})
+@ActiveProfiles("test")
+class RepositoryQueryPlanTests {
+
+    // Queries that read every row anyway: unpaged listings, rollup rebuilds and substring search,
+    // which no B-tree index can serve (the search index covers it in INDEX mode)
+    private static final Set<String> FULL_SCANS_BY_DESIGN = Set.of(
+            "ItemRepository.findAll",
+            "ItemRepository.findByItemnameContaining",
+            "UserRepository.findAll",
+            "UserRepository.findByNameContaining",
+            "InvoiceRepository.findAll",
+            "InvoiceRepository.findSince",
+            "InvoiceRepository.findByCustomerName",
+            "InvoiceRepository.totalsByUser",
+            "InvoiceRepository.totalsByDay",
+            "InvoiceItemRepository.totalsByItem",
+            "ItemStockRepository.findAll",
+            "InvoiceArchiveRepository.totalsByUser",
+            "InvoiceArchiveRepository.totalsByDay",
+            "InvoiceArchiveRepository.totalsByItem",
+            "ProjectionRepository.itemsByName",
+            "ProjectionRepository.invoicesByCustomerName");
+
+    @MockitoSpyBean
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceItemRepository invoiceItemRepository;
+
+    @Autowired
+    private ItemStockRepository itemStockRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private InvoiceArchiveRepository invoiceArchiveRepository;
+
+    @Autowired
+    private ProjectionRepository projectionRepository;
+
+    @Autowired
+    private InvoicePeriods invoicePeriods;
+
+    @Autowired
+    private InvoiceExporter invoiceExporter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Item item;
+    private Invoice invoice;
+
+    @BeforeEach
+    void setUp() {
+        item = new Item();
+        item.setItemname("Planned item");
+        item.setItemvalue(3);
+        item = itemRepository.save(item);
+
+        user = new User();
+        user.setUsername("planner");
+        user.setName("Plan Customer");
+        user = userRepository.save(user);
+
+        invoice = new Invoice();
+        invoice.setUser(user);
+        InvoiceItem line = new InvoiceItem();
+        line.setInvoice(invoice);
+        line.setItem(item);
+        line.setQuantity(2);
+        line.setPrice(6);
+        invoice.setItems(new ArrayList<>(List.of(line)));
+        invoice.setTotalAmount(6);
+        invoice = invoiceRepository.save(invoice);
+    }
+
+    @Test
+    void repositoryQueriesUseIndexes() {
+        PageRequest page = PageRequest.of(0, 10);
+        Date since = invoicePeriods.hotSince();
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("ItemRepository.findAll", itemRepository::findAll);
+        queries.put("ItemRepository.findById", () -> itemRepository.findById(item.getItemId()));
+        queries.put("ItemRepository.findByItemnameContaining", () -> itemRepository.findByItemnameContaining("plan"));
+        queries.put("ItemRepository.findByItemIdGreaterThanOrderByItemIdAsc", () -> itemRepository.findByItemIdGreaterThanOrderByItemIdAsc(0L, page));
+        queries.put("ItemRepository.findIndexEntriesAfter", () -> itemRepository.findIndexEntriesAfter(0L, page));
+        queries.put("UserRepository.findAll", userRepository::findAll);
+        queries.put("UserRepository.findById", () -> userRepository.findById(user.getId()));
+        queries.put("UserRepository.findByNameContaining", () -> userRepository.findByNameContaining("plan"));
+        queries.put("UserRepository.name", () -> userRepository.name("Plan Customer"));
+        queries.put("UserRepository.findByIdGreaterThanOrderByIdAsc", () -> userRepository.findByIdGreaterThanOrderByIdAsc(0L, page));
+        queries.put("UserRepository.findIndexEntriesAfter", () -> userRepository.findIndexEntriesAfter(0L, page));
+        queries.put("InvoiceRepository.findAll", invoiceRepository::findAll);
+        queries.put("InvoiceRepository.findSince", () -> invoiceRepository.findSince(since));
+        queries.put("InvoiceRepository.findByCustomerId", () -> invoiceRepository.findByCustomerId(user.getId(), since));
+        queries.put("InvoiceRepository.findByCustomerName", () -> invoiceRepository.findByCustomerName("plan", since));
+        queries.put("InvoiceRepository.findByCustomerIdIn", () -> invoiceRepository.findByCustomerIdIn(List.of(user.getId()), since));
+        queries.put("InvoiceRepository.findIdsAfter", () -> invoiceRepository.findIdsAfter(0L, since, page));
+        queries.put("InvoiceRepository.findWithLinesByIdIn", () -> invoiceRepository.findWithLinesByIdIn(List.of(invoice.getId()), since));
+        queries.put("InvoiceRepository.totalsByUser", invoiceRepository::totalsByUser);
+        queries.put("InvoiceRepository.totalsByDay", invoiceRepository::totalsByDay);
+        queries.put("InvoiceItemRepository.totalsByItem", invoiceItemRepository::totalsByItem);
+        queries.put("ItemStockRepository.findAll", itemStockRepository::findAll);
+        queries.put("IdempotencyKeyRepository.findById", () -> idempotencyKeyRepository.findById("plan-key"));
+        queries.put("InvoiceArchiveRepository.findByUserIdIn", () -> invoiceArchiveRepository.findByUserIdIn(List.of(user.getId())));
+        queries.put("InvoiceArchiveRepository.findLinesByInvoiceIdIn", () -> invoiceArchiveRepository.findLinesByInvoiceIdIn(
+                List.of(invoice.getId())));
+        queries.put("InvoiceArchiveRepository.totalsByUser", invoiceArchiveRepository::totalsByUser);
+        queries.put("InvoiceArchiveRepository.totalsByDay", invoiceArchiveRepository::totalsByDay);
+        queries.put("InvoiceArchiveRepository.totalsByItem", invoiceArchiveRepository::totalsByItem);
+        Fieldset itemFields = Fieldset.parse("itemname", ProjectionRepository.ITEM_FIELDS);
+        Fieldset invoiceFields = Fieldset.parse("userName,items.itemname",
+                ProjectionRepository.INVOICE_FIELDS, ProjectionRepository.INVOICE_LINE_FIELDS);
+        queries.put("ProjectionRepository.items", () -> projectionRepository.items(itemFields, 0L, 10));
+        queries.put("ProjectionRepository.itemsById", () -> projectionRepository.itemsById(itemFields, List.of(item.getItemId())));
+        queries.put("ProjectionRepository.itemsByName", () -> projectionRepository.itemsByName(itemFields, "plan"));
+        queries.put("ProjectionRepository.users", () -> projectionRepository.users(
+                Fieldset.parse("name", ProjectionRepository.USER_FIELDS), 0L, 10));
+        queries.put("ProjectionRepository.invoices", () -> projectionRepository.invoices(invoiceFields, List.of(invoice.getId()), since));
+        queries.put("ProjectionRepository.invoicesByCustomerIds", () -> projectionRepository.invoicesByCustomerIds(
+                invoiceFields, List.of(user.getId()), since));
+        queries.put("ProjectionRepository.invoicesByCustomerName", () -> projectionRepository.invoicesByCustomerName(
+                invoiceFields, "plan", since));
+        queries.put("InvoiceExporter.export", () -> invoiceExporter.export(LocalDate.now().minusDays(1), LocalDate.now(),
+                InvoiceExporter.Format.CSV, OutputStream.nullOutputStream()));
+        // A range before the hot window reads the archive as well
+        queries.put("InvoiceExporter.exportWithArchive", () -> invoiceExporter.export(LocalDate.now().minusYears(2),
+                LocalDate.now(), InvoiceExporter.Format.CSV, OutputStream.nullOutputStream()));
+
+        List<String> fullScans = new ArrayList<>();
+        for (Map.Entry<String, Runnable> query : queries.entrySet()) {
+            for (String sql : capture(query.getValue())) {
+                String plan = explain(sql);
+                if (plan.contains(".tableScan") && !FULL_SCANS_BY_DESIGN.contains(query.getKey())) {
+                    fullScans.add(query.getKey() + ":\n" + plan);
+                }
+            }
+        }
+        assertThat(fullScans).as("queries that scan a whole table").isEmpty();
+    }
+
+    private List<String> capture(Runnable query) {
+        clearInvocations(statementCounter);
+        query.run();
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(statementCounter, atLeastOnce()).inspect(sql.capture());
+        return sql.getAllValues().stream()
+                .filter(statement -> statement.stripLeading().regionMatches(true, 0, "select", 0, 6))
+                .toList();
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute("EXPLAIN " + sql, (PreparedStatement statement) -> {
+            bindSampleValues(statement);
+            try (var plan = statement.executeQuery()) {
+                plan.next();
+                return plan.getString(1);
+            }
+        });
+    }
+
+    // The plan depends on which conditions there are, not on the values; any value of the right type will do
+    private static void bindSampleValues(PreparedStatement statement) throws SQLException {
+        ParameterMetaData parameters = statement.getParameterMetaData();
+        for (int i = 1; i <= parameters.getParameterCount(); i++) {
+            switch (parameters.getParameterType(i)) {
+                case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT, Types.NUMERIC, Types.DECIMAL,
+                     Types.DOUBLE, Types.FLOAT, Types.REAL -> statement.setLong(i, 1);
+                case Types.DATE, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE ->
+                        statement.setTimestamp(i, new Timestamp(System.currentTimeMillis()));
+                default -> statement.setString(i, "1");
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.ProjectApliman.EcommerceShop.search;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchIndexesTests {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    void buildsFromTheRepositoriesAndFollowsWrites() {
+        when(itemRepository.findIndexEntriesAfter(eq(0L), any(Pageable.class)))
+                .thenReturn(List.<Object[]>of(new Object[]{1L, "Oak desk"}, new Object[]{2L, "Desk lamp"}));
+        when(userRepository.findIndexEntriesAfter(anyLong(), any(Pageable.class))).thenReturn(List.of());
+        SearchIndexes indexes = indexes(SearchIndexes.SearchMode.INDEX, 10);
+        indexes.afterSingletonsInstantiated();
+
+        assertThat(indexes.itemIds("DESK")).contains(List.of(1L, 2L));
+
+        indexes.indexItem(item(2L, "Floor lamp"));
+        assertThat(indexes.itemIds("desk")).contains(List.of(1L));
+        assertThat(indexes.itemIds("lamp")).contains(List.of(2L));
+
+        indexes.removeItem(1L);
+        assertThat(indexes.itemIds("desk")).contains(List.of());
+    }
+
+    @Test
+    void shortTermsFallBackToTheDatabase() {
+        SearchIndexes indexes = indexes(SearchIndexes.SearchMode.INDEX, 10);
+        indexes.indexItem(item(1L, "TV"));
+
+        assertThat(indexes.itemIds("tv")).isEmpty();
+        assertThat(indexes.userIds("al")).isEmpty();
+    }
+
+    @Test
+    void tooManyMatchesFallBackToTheDatabase() {
+        SearchIndexes indexes = indexes(SearchIndexes.SearchMode.INDEX, 2);
+        for (long id = 1; id <= 3; id++) {
+            indexes.indexItem(item(id, "Chair " + id));
+        }
+
+        assertThat(indexes.itemIds("chair 1")).contains(List.of(1L));
+        assertThat(indexes.itemIds("chair")).isEmpty();
+    }
+
+    @Test
+    void likeModeAlwaysFallsBack() {
+        SearchIndexes indexes = indexes(SearchIndexes.SearchMode.LIKE, 10);
+        indexes.indexItem(item(1L, "Chair"));
+
+        assertThat(indexes.itemIds("chair")).isEmpty();
+    }
+
+    private SearchIndexes indexes(SearchIndexes.SearchMode mode, int maxIndexIds) {
+        return new SearchIndexes(itemRepository, userRepository, mode, maxIndexIds);
+    }
+
+    private static Item item(Long id, String name) {
+        Item item = new Item();
+        item.setItemId(id);
+        item.setItemname(name);
+        return item;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ProjectApliman.EcommerceShop.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrigramIndexTests {
+
+    private final TrigramIndex index = new TrigramIndex();
+
+    @Test
+    void matchesSubstringsIgnoringCase() {
+        index.put(3, "Wooden Chair");
+        index.put(1, "CHAIRMAN mug");
+        index.put(2, "Table");
+
+        assertThat(index.search("chair")).containsExactly(1L, 3L);
+        assertThat(index.search("DEN ch")).containsExactly(3L);
+        assertThat(index.search("tab")).containsExactly(2L);
+        // Every trigram of the term is indexed, but not next to each other
+        index.put(4, "air cha");
+        assertThat(index.search("chair")).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void renameDropsTheOldPostings() {
+        index.put(1, "Lamp");
+        index.put(1, "Desk lamp");
+
+        assertThat(index.search("desk")).containsExactly(1L);
+        assertThat(index.search("lamp")).containsExactly(1L);
+
+        index.put(1, "Sofa");
+        assertThat(index.search("lamp")).isEmpty();
+        assertThat(index.search("desk")).isEmpty();
+        assertThat(index.search("sofa")).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removedAndNullNamedIdsAreNotFound() {
+        index.put(1, "Lamp");
+        index.put(2, "Lamp shade");
+
+        index.remove(1);
+        assertThat(index.search("lamp")).containsExactly(2L);
+
+        index.put(2, null);
+        assertThat(index.search("lamp")).isEmpty();
+        assertThat(index.size()).isZero();
+
+        // Removing an id that is not indexed is a no-op
+        index.remove(3);
+    }
+
+    @Test
+    void termsShorterThanATrigramAreNotSearched() {
+        index.put(1, "Ox");
+
+        assertThat(TrigramIndex.canSearch("ox")).isFalse();
+        assertThat(TrigramIndex.canSearch("oxe")).isTrue();
+        assertThatThrownBy(() -> index.search("ox")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
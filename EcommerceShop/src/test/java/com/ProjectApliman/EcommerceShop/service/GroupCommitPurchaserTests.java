@@ -0,0 +1,201 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// The controller answers RejectedExecutionException with 503 and CommitPendingException with 202
+class GroupCommitPurchaserTests {
+
+    private static final long BAD_BASKET = 13;
+
+    private final PurchaseService purchaseService = mock(PurchaseService.class);
+    // Buyers of every batch handed to purchaseBatch, in order
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch batchStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private GroupCommitPurchaser purchaser;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (purchaser != null) {
+            purchaser.stop();
+        }
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        holdFirstBatch();
+        purchaser = started(1, Duration.ofSeconds(5));
+
+        CompletableFuture<Invoice> inBatch = purchaser.submit(request(1));
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Invoice> queued = purchaser.submit(request(2));
+        assertThatThrownBy(() -> purchaser.submit(request(3)))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("full");
+
+        release.countDown();
+        assertThat(inBatch.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1);
+        assertThat(queued.get(5, TimeUnit.SECONDS).getId()).isEqualTo(2);
+    }
+
+    @Test
+    void timedOutCallerIsWithdrawnUnlessItsBatchStarted() throws Exception {
+        holdFirstBatch();
+        purchaser = started(10, Duration.ofMillis(300));
+
+        CompletableFuture<Invoice> first = CompletableFuture.supplyAsync(() -> purchaser.purchase(request(1)));
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Still queued when the wait ends: taken out, it never runs
+        assertThatThrownBy(() -> purchaser.purchase(request(2)))
+                .isInstanceOf(RejectedExecutionException.class)
+                .hasMessageContaining("withdrawn");
+        // Already in a batch: the caller gives up, the purchase does not
+        ExecutionException pending = catchExecution(first);
+        assertThat(pending.getCause()).isInstanceOf(GroupCommitPurchaser.CommitPendingException.class);
+
+        release.countDown();
+        CompletableFuture<Invoice> outcome = ((GroupCommitPurchaser.CommitPendingException) pending.getCause()).outcome();
+        assertThat(outcome.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1);
+        purchaser.stop();
+        assertThat(batches).containsExactly(List.of(1L));
+    }
+
+    @Test
+    void failingBasketFailsAloneInItsBatch() throws Exception {
+        holdFirstBatch();
+        purchaser = started(10, Duration.ofSeconds(5));
+
+        CompletableFuture<Invoice> first = purchaser.submit(request(1));
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Invoice> good = purchaser.submit(request(2));
+        CompletableFuture<Invoice> bad = purchaser.submit(request(BAD_BASKET));
+        CompletableFuture<Invoice> alsoGood = purchaser.submit(request(4));
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1);
+        assertThat(good.get(5, TimeUnit.SECONDS).getId()).isEqualTo(2);
+        assertThat(alsoGood.get(5, TimeUnit.SECONDS).getId()).isEqualTo(4);
+        assertThat(catchExecution(bad).getCause()).hasMessage("Out of stock");
+        assertThat(batches).containsExactly(List.of(1L), List.of(2L, BAD_BASKET, 4L));
+    }
+
+    @Test
+    void rolledBackBatchIsRetriedOnePurchaseAtATime() throws Exception {
+        when(purchaseService.purchaseBatch(anyList())).thenThrow(new IllegalStateException("Deadlock"));
+        when(purchaseService.purchase(eq(1L), anyList(), isNull())).thenAnswer(invocation -> {
+            List<InvoiceItem> lines = invocation.getArgument(1);
+            // The ids the rolled-back flush assigned are cleared before the retry
+            assertThat(lines).allSatisfy(line -> assertThat(line.getId()).isNull());
+            return invoice(1);
+        });
+        when(purchaseService.purchase(eq(BAD_BASKET), anyList(), isNull())).thenThrow(new IllegalArgumentException("Unknown item"));
+        purchaser = started(10, Duration.ofSeconds(5));
+
+        PurchaseRequest good = request(1);
+        good.items().get(0).setId(77L);
+        CompletableFuture<Invoice> goodResult = purchaser.submit(good);
+        CompletableFuture<Invoice> badResult = purchaser.submit(request(BAD_BASKET));
+
+        assertThat(goodResult.get(5, TimeUnit.SECONDS).getId()).isEqualTo(1);
+        assertThat(catchExecution(badResult).getCause()).hasMessage("Unknown item");
+    }
+
+    @Test
+    void stopDrainsTheQueueBeforeReturning() throws Exception {
+        holdFirstBatch();
+        purchaser = started(10, Duration.ofSeconds(5));
+
+        List<CompletableFuture<Invoice>> results = new ArrayList<>();
+        results.add(purchaser.submit(request(1)));
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        for (long buyer = 2; buyer <= 6; buyer++) {
+            results.add(purchaser.submit(request(buyer)));
+        }
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(purchaser::stop);
+        Thread.sleep(200);
+        assertThat(stopped).isNotDone();
+        assertThatThrownBy(() -> purchaser.submit(request(7))).isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        stopped.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Invoice> result : results) {
+            assertThat(result).isCompleted();
+        }
+        assertThat(batches.stream().mapToInt(List::size).sum()).isEqualTo(6);
+    }
+
+    // purchaseBatch answers every basket but BAD_BASKET with an invoice; the first call waits for release
+    private void holdFirstBatch() {
+        when(purchaseService.purchaseBatch(anyList())).thenAnswer(invocation -> {
+            List<PurchaseRequest> requests = invocation.getArgument(0);
+            batches.add(requests.stream().map(PurchaseRequest::userId).toList());
+            if (batchStarted.getCount() > 0) {
+                batchStarted.countDown();
+                assertThat(release.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+            List<PurchaseService.PurchaseOutcome> outcomes = new ArrayList<>();
+            for (PurchaseRequest request : requests) {
+                outcomes.add(request.userId() == BAD_BASKET
+                        ? new PurchaseService.PurchaseOutcome(null, new IllegalStateException("Out of stock"))
+                        : new PurchaseService.PurchaseOutcome(invoice(request.userId()), null));
+            }
+            return outcomes;
+        });
+    }
+
+    private GroupCommitPurchaser started(int queueCapacity, Duration callerTimeout) {
+        GroupCommitPurchaser started = new GroupCommitPurchaser(new SimpleMeterRegistry(),
+                GroupCommitPurchaser.PurchaseMode.GROUP_COMMIT, queueCapacity, 10, Duration.ofMillis(50), callerTimeout);
+        ReflectionTestUtils.setField(started, "purchaseService", purchaseService);
+        started.start();
+        return started;
+    }
+
+    private static ExecutionException catchExecution(CompletableFuture<?> future) {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e;
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        throw new AssertionError("Expected the future to fail");
+    }
+
+    private static PurchaseRequest request(long buyer) {
+        InvoiceItem line = new InvoiceItem();
+        line.setQuantity(1);
+        return new PurchaseRequest(buyer, List.of(line));
+    }
+
+    private static Invoice invoice(long id) {
+        Invoice invoice = new Invoice();
+        invoice.setId(id);
+        return invoice;
+    }
+}
@@ -0,0 +1,252 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Invoice;
+import com.ProjectApliman.EcommerceShop.model.InvoiceItem;
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.repository.IdempotencyKeyRepository;
+import com.ProjectApliman.EcommerceShop.repository.InvoiceRepository;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:idempotency;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class IdempotentPurchasesTests {
+
+    private static final long BUYER = 4000;
+    private static final long ITEM = 5000;
+    private static final String BASKET = "[{\"item\":{\"itemId\":5000},\"quantity\":2}]";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotentPurchases idempotentPurchases;
+
+    @Autowired
+    private PurchaseService purchaseService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private String key;
+
+    @BeforeEach
+    void setUp() {
+        key = UUID.randomUUID().toString();
+        jdbcTemplate.update("DELETE FROM idempotency_key");
+        jdbcTemplate.update("DELETE FROM invoice_item");
+        jdbcTemplate.update("DELETE FROM invoice");
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM user WHERE id = ?", Integer.class, BUYER) == 0) {
+            jdbcTemplate.update("INSERT INTO user (id, username, name, email) VALUES (?, 'buyer', 'Idempotent Buyer', NULL)", BUYER);
+            jdbcTemplate.update("INSERT INTO item (item_id, itemname, itemvalue) VALUES (?, 'Idempotent item', 7.5)", ITEM);
+        }
+    }
+
+    @Test
+    void retryIsReplayedFromMemory() throws Exception {
+        String firstResponse = mockMvc.perform(post("/invoice/purchase/{userId}", BUYER)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BASKET))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andReturn().getResponse().getContentAsString();
+        long invoiceId = JsonPath.<Number>read(firstResponse, "$.id").longValue();
+
+        mockMvc.perform(post("/invoice/purchase/{userId}", BUYER)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BASKET))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(invoiceId));
+        assertThat(invoices()).isEqualTo(1);
+    }
+
+    @Test
+    void keyReusedForAnotherBasketIsRefused() throws Exception {
+        mockMvc.perform(post("/invoice/purchase/{userId}", BUYER)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(BASKET))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/invoice/purchase/{userId}", BUYER)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"item\":{\"itemId\":5000},\"quantity\":3}]"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void duplicateInFlightWaitsForTheFirstRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger purchases = new AtomicInteger();
+        Invoice invoice = new Invoice();
+        invoice.setId(-1L);
+
+        CompletableFuture<IdempotentPurchases.Result> first = CompletableFuture.supplyAsync(() ->
+                idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> {
+                    purchases.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return invoice;
+                }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<IdempotentPurchases.Result> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> {
+                    purchases.incrementAndGet();
+                    return new Invoice();
+                }));
+
+        Thread.sleep(200);
+        assertThat(duplicate).isNotDone();
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).replayed()).isFalse();
+        IdempotentPurchases.Result replayed = duplicate.get(5, TimeUnit.SECONDS);
+        assertThat(replayed.replayed()).isTrue();
+        assertThat(replayed.invoice()).isSameAs(invoice);
+        assertThat(purchases).hasValue(1);
+    }
+
+    @Test
+    void retryWaitsForTheBatchOfAPurchaseItsCallerGaveUpOn() throws Exception {
+        CompletableFuture<Invoice> batch = new CompletableFuture<>();
+        AtomicInteger purchases = new AtomicInteger();
+        Invoice invoice = new Invoice();
+        invoice.setId(-1L);
+
+        assertThatThrownBy(() -> idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> {
+            purchases.incrementAndGet();
+            throw new GroupCommitPurchaser.CommitPendingException("Purchase not committed within 10s", batch);
+        })).isInstanceOf(GroupCommitPurchaser.CommitPendingException.class);
+        CompletableFuture<IdempotentPurchases.Result> retry = CompletableFuture.supplyAsync(() ->
+                idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> {
+                    purchases.incrementAndGet();
+                    return new Invoice();
+                }));
+
+        Thread.sleep(200);
+        assertThat(retry).isNotDone();
+        batch.complete(invoice);
+
+        IdempotentPurchases.Result replayed = retry.get(5, TimeUnit.SECONDS);
+        assertThat(replayed.replayed()).isTrue();
+        assertThat(replayed.invoice()).isSameAs(invoice);
+        assertThat(purchases).hasValue(1);
+    }
+
+    @Test
+    void purchaseFailingInItsBatchMayBeRetried() {
+        CompletableFuture<Invoice> batch = new CompletableFuture<>();
+        Invoice invoice = new Invoice();
+
+        assertThatThrownBy(() -> idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> {
+            throw new GroupCommitPurchaser.CommitPendingException("Purchase not committed within 10s", batch);
+        })).isInstanceOf(GroupCommitPurchaser.CommitPendingException.class);
+        batch.completeExceptionally(new IllegalStateException("Out of stock"));
+
+        IdempotentPurchases.Result retried = idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> invoice);
+        assertThat(retried.replayed()).isFalse();
+        assertThat(retried.invoice()).isSameAs(invoice);
+    }
+
+    @Test
+    void keyIsFoundInTheTableOnceForgottenInMemory() {
+        Invoice invoice = idempotentPurchases.purchase(key, BUYER, basket(2),
+                idempotencyKey -> purchaseService.purchase(BUYER, basket(2), idempotencyKey)).invoice();
+
+        // A restarted instance, or another one, has none of this instance's keys in memory
+        IdempotentPurchases restarted = newInstance();
+        IdempotentPurchases.Result replayed = restarted.purchase(key, BUYER, basket(2),
+                idempotencyKey -> fail("purchased again"));
+
+        assertThat(replayed.replayed()).isTrue();
+        assertThat(replayed.invoice().getId()).isEqualTo(invoice.getId());
+        assertThat(replayed.invoice().getItems()).hasSize(1);
+        assertThatThrownBy(() -> newInstance().purchase(key, BUYER, basket(3), idempotencyKey -> fail("purchased again")))
+                .isInstanceOf(IdempotentPurchases.KeyReusedException.class);
+    }
+
+    @Test
+    void keyCommittedByAnotherInstanceFirstIsReplayed() {
+        IdempotentPurchases otherInstance = newInstance();
+        Invoice[] otherInvoice = new Invoice[1];
+
+        // The lookup misses; before this purchase commits, the other instance commits the same key
+        IdempotentPurchases.Result result = idempotentPurchases.purchase(key, BUYER, basket(2), idempotencyKey -> {
+            otherInvoice[0] = otherInstance.purchase(key, BUYER, basket(2),
+                    otherKey -> purchaseService.purchase(BUYER, basket(2), otherKey)).invoice();
+            return purchaseService.purchase(BUYER, basket(2), idempotencyKey);
+        });
+
+        assertThat(result.invoice().getId()).isEqualTo(otherInvoice[0].getId());
+        assertThat(invoices()).isEqualTo(1);
+        assertThat(idempotencyKeyRepository.findById(key)).hasValueSatisfying(stored ->
+                assertThat(stored.getInvoiceId()).isEqualTo(otherInvoice[0].getId()));
+    }
+
+    private IdempotentPurchases newInstance() {
+        return new IdempotentPurchases(idempotencyKeyRepository, invoiceRepository, transactionManager,
+                new SimpleMeterRegistry(), 100, Duration.ofHours(1), Duration.ofSeconds(5), Duration.ofDays(1));
+    }
+
+    private int invoices() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM invoice", Integer.class);
+    }
+
+    private static List<InvoiceItem> basket(int quantity) {
+        Item item = new Item();
+        item.setItemId(ITEM);
+        InvoiceItem line = new InvoiceItem();
+        line.setItem(item);
+        line.setQuantity(quantity);
+        return List.of(line);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import com.ProjectApliman.EcommerceShop.repository.ItemRepository;
+import com.ProjectApliman.EcommerceShop.search.SearchIndexes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ItemCatalogTests {
+
+    private final ItemRepository itemRepository = mock(ItemRepository.class);
+    private final SearchIndexes searchIndexes = mock(SearchIndexes.class);
+    private final ItemCatalog catalog = catalog(ItemCatalog.CheckoutConsistency.DATABASE);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void listingLoadedBeforeAWriteIsNotServedAfterIt() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        Item before = item(1L, "Before");
+        Item after = item(1L, "After");
+        when(itemRepository.findAll())
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+                    return List.of(before);
+                })
+                .thenReturn(List.of(after));
+        when(itemRepository.save(any())).thenReturn(after);
+
+        // The listing is read, the item is written, then the stale listing finishes loading
+        Future<List<Item>> stale = executor.submit(catalog::findAll);
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        catalog.save(after);
+        written.countDown();
+        assertThat(stale.get(5, TimeUnit.SECONDS)).containsExactly(before);
+
+        assertThat(catalog.findAll()).containsExactly(after);
+    }
+
+    @Test
+    void checkoutRowsReadBeforeAWriteAreNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        Item before = item(1L, "Before");
+        Item after = item(1L, "After");
+        when(itemRepository.findAllById(any()))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+                    return List.of(before);
+                });
+        when(itemRepository.save(any())).thenReturn(after);
+        when(itemRepository.findById(1L)).thenReturn(Optional.of(after));
+
+        Future<Map<Long, Item>> stale = executor.submit(() -> catalog.findForCheckout(Set.of(1L)));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        catalog.save(after);
+        written.countDown();
+        assertThat(stale.get(5, TimeUnit.SECONDS)).containsEntry(1L, before);
+
+        assertThat(catalog.findById(1L)).contains(after);
+    }
+
+    @Test
+    void searchAndCachedCheckoutDoNotCacheRowsReadBeforeAWrite() throws Exception {
+        ItemCatalog cachedCheckout = catalog(ItemCatalog.CheckoutConsistency.CACHED);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        Item before = item(1L, "Before");
+        Item after = item(1L, "After");
+        when(searchIndexes.itemIds("Before")).thenReturn(Optional.of(List.of(1L)));
+        when(itemRepository.findAllById(any()))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    assertThat(written.await(5, TimeUnit.SECONDS)).isTrue();
+                    return List.of(before);
+                })
+                .thenReturn(List.of(after));
+        when(itemRepository.save(any())).thenReturn(after);
+
+        Future<List<Item>> stale = executor.submit(() -> cachedCheckout.search("Before"));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        cachedCheckout.save(after);
+        written.countDown();
+        assertThat(stale.get(5, TimeUnit.SECONDS)).containsExactly(before);
+
+        // Loaded again rather than served from the cache, and cached this time
+        assertThat(cachedCheckout.findForCheckout(Set.of(1L))).containsEntry(1L, after);
+        assertThat(cachedCheckout.findForCheckout(Set.of(1L))).containsEntry(1L, after);
+        verify(itemRepository, times(2)).findAllById(any());
+    }
+
+    @Test
+    void listingIsCachedUntilTheNextWrite() {
+        Item item = item(1L, "Item");
+        when(itemRepository.findAll()).thenReturn(List.of(item));
+        when(itemRepository.save(any())).thenReturn(item);
+
+        catalog.findAll();
+        catalog.findAll();
+        verify(itemRepository, times(1)).findAll();
+
+        catalog.save(item);
+        catalog.findAll();
+        verify(itemRepository, times(2)).findAll();
+    }
+
+    private ItemCatalog catalog(ItemCatalog.CheckoutConsistency checkoutConsistency) {
+        return new ItemCatalog(itemRepository, searchIndexes, new ResourceVersions(),
+                mock(ApplicationEventPublisher.class), new SimpleMeterRegistry(), mock(PlatformTransactionManager.class),
+                100, 100, Duration.ofMinutes(10), checkoutConsistency);
+    }
+
+    private static Item item(Long id, String name) {
+        Item item = new Item();
+        item.setItemId(id);
+        item.setItemname(name);
+        return item;
+    }
+}
@@ -0,0 +1,177 @@
+package com.ProjectApliman.EcommerceShop.service;
+
+import com.ProjectApliman.EcommerceShop.model.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:import;MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "shop.import.chunk-size=10"})
+@ActiveProfiles("test")
+class ItemImporterTests {
+
+    @Autowired
+    private ItemImporter itemImporter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM item");
+        // Passes validation, fails in the database: stands in for any constraint a chunk can hit
+        jdbcTemplate.execute("ALTER TABLE item ADD CONSTRAINT item_not_rejected CHECK (itemname <> 'Rejected')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("ALTER TABLE item DROP CONSTRAINT item_not_rejected");
+    }
+
+    @Test
+    void quotedFieldsKeepCommasAndQuotes() {
+        assertThat(ItemImporter.splitCsv("1,\"Desk, oak\",\"The \"\"big\"\" one\",,plain"))
+                .containsExactly("1", "Desk, oak", "The \"big\" one", "", "plain");
+        assertThat(ItemImporter.splitCsv("\"\"")).containsExactly("");
+        assertThat(ItemImporter.splitCsv("\"two\nlines\",x")).containsExactly("two\nlines", "x");
+        assertThatThrownBy(() -> ItemImporter.splitCsv("1,\"open"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unterminated quoted field");
+    }
+
+    @Test
+    void validationNamesTheFirstProblem() {
+        assertThat(ItemImporter.validate(item(null, "Lamp", 5))).isNull();
+        assertThat(ItemImporter.validate(null)).isEqualTo("Row is empty");
+        assertThat(ItemImporter.validate(item(0L, "Lamp", 5))).isEqualTo("itemId must be positive");
+        assertThat(ItemImporter.validate(item(null, " ", 5))).isEqualTo("itemname is required");
+        assertThat(ItemImporter.validate(item(null, "Lamp", -1))).isEqualTo("itemvalue must be a non-negative number");
+        assertThat(ItemImporter.validate(item(null, "Lamp", Double.NaN))).isEqualTo("itemvalue must be a non-negative number");
+        assertThat(ItemImporter.validate(item(null, "x".repeat(256), 5)))
+                .isEqualTo("Text fields are limited to 255 characters");
+    }
+
+    @Test
+    void badRowsAreReportedByLineAndTheRestImported() throws IOException {
+        ItemImporter.ImportResult result = importCsv("""
+                itemname,itemvalue,itemdescription
+                Lamp,5
+                ,3
+                Chair,abc
+
+                Desk,40,"Oak, with a ""drawer""\"
+                Table,-1
+                """);
+
+        assertThat(result.rows()).isEqualTo(5);
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.failed()).isEqualTo(3);
+        assertThat(result.errors()).extracting(ItemImporter.RowError::row).containsExactly(3L, 4L, 7L);
+        assertThat(result.errors().get(0).message()).isEqualTo("itemname is required");
+        assertThat(result.errors().get(1).message()).startsWith("Invalid number");
+        assertThat(jdbcTemplate.queryForObject("SELECT itemdescription FROM item WHERE itemname = 'Desk'", String.class))
+                .isEqualTo("Oak, with a \"drawer\"");
+    }
+
+    @Test
+    void quotedFieldsMaySpanLines() throws IOException {
+        ItemImporter.ImportResult result = importCsv("""
+                itemname,itemdescription,itemvalue
+                Shelf,"Three boards
+                and four ""legs\""
+                still quoted",12
+                Stool,,x
+                """);
+
+        assertThat(result.imported()).isEqualTo(1);
+        // The bad row after the multi-line one is reported by its own line number
+        assertThat(result.errors()).extracting(ItemImporter.RowError::row).containsExactly(5L);
+        assertThat(jdbcTemplate.queryForObject("SELECT itemdescription FROM item WHERE itemname = 'Shelf'", String.class))
+                .isEqualTo("Three boards\nand four \"legs\"\nstill quoted");
+    }
+
+    @Test
+    void strayQuoteRejectsItsRowAndTheFollowingLinesAreRead() throws IOException {
+        StringBuilder csv = new StringBuilder("itemname,itemvalue\nBroken,\"1\n");
+        for (int i = 1; i <= 600; i++) {
+            csv.append("Item").append(i).append(',').append(i).append('\n');
+        }
+
+        ItemImporter.ImportResult result = importCsv(csv.toString());
+
+        assertThat(result.rows()).isEqualTo(601);
+        assertThat(result.imported()).isEqualTo(600);
+        assertThat(result.errors()).extracting(ItemImporter.RowError::row).containsExactly(2L);
+        assertThat(result.errors().get(0).message()).isEqualTo("Quoted field not closed within 4096 characters");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item", Integer.class)).isEqualTo(600);
+    }
+
+    @Test
+    void rejectedChunkIsRetriedRowByRow() throws IOException {
+        ItemImporter.ImportResult result = importCsv("""
+                itemname,itemvalue
+                First,1
+                Rejected,2
+                Third,3
+                """);
+
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.failed()).isEqualTo(1);
+        assertThat(result.errors()).extracting(ItemImporter.RowError::row).containsExactly(3L);
+        assertThat(jdbcTemplate.queryForList("SELECT itemname FROM item ORDER BY itemname", String.class))
+                .containsExactly("First", "Third");
+    }
+
+    @Test
+    void rowsWithAnIdAreUpserted() throws IOException {
+        jdbcTemplate.update("INSERT INTO item (item_id, itemname, itemvalue) VALUES (7001, 'Old name', 1)");
+
+        ItemImporter.ImportResult result = importCsv("""
+                itemid,itemname,itemvalue
+                7001,New name,2
+                7002,Created,3
+                ,Without id,4
+                """);
+
+        assertThat(result.imported()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT itemname FROM item WHERE item_id = 7001", String.class)).isEqualTo("New name");
+        assertThat(jdbcTemplate.queryForObject("SELECT itemvalue FROM item WHERE item_id = 7001", Double.class)).isEqualTo(2.0);
+        assertThat(jdbcTemplate.queryForObject("SELECT itemname FROM item WHERE item_id = 7002", String.class)).isEqualTo("Created");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item", Integer.class)).isEqualTo(3);
+    }
+
+    @Test
+    void jsonRowsOfTheWrongShapeFailOnTheirOwn() throws IOException {
+        ItemImporter.ImportResult result = itemImporter.importItems(new ByteArrayInputStream("""
+                [{"itemname": "Rug", "itemvalue": 9}, {"itemname": "Mat", "itemvalue": "cheap"}, {"itemId": 7003, "itemname": "Vase"}]
+                """.getBytes(StandardCharsets.UTF_8)), ItemImporter.Format.JSON);
+
+        assertThat(result.imported()).isEqualTo(2);
+        assertThat(result.errors()).extracting(ItemImporter.RowError::row).containsExactly(2L);
+        assertThat(jdbcTemplate.queryForObject("SELECT itemname FROM item WHERE item_id = 7003", String.class)).isEqualTo("Vase");
+    }
+
+    private ItemImporter.ImportResult importCsv(String csv) throws IOException {
+        return itemImporter.importItems(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ItemImporter.Format.CSV);
+    }
+
+    private static Item item(Long id, String name, double value) {
+        Item item = new Item();
+        item.setItemId(id);
+        item.setItemname(name);
+        item.setItemvalue(value);
+        return item;
+    }
+}